@@ -0,0 +1,82 @@
+/*
+ * Concurrent Ring Buffer Benchmark
+ */
+package com.awirtz.util;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * JMH benchmarks pairing producer and consumer threads on
+ * {@link SpscRingBuffer} and {@link MpscRingBuffer}.  Each operation is a
+ * single non-blocking write or read attempt, so the reported throughput and
+ * latency percentiles include the attempts made against a full or empty
+ * buffer.
+ * 
+ * @author Aaron Meriwether
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConcurrentRingBufferBenchmark {
+
+    @State(Scope.Group)
+    public static class Buffers {
+        @Param({"1", "64", "1024", "65536"})
+        public int messageSize;
+
+        @Param({"262144"})
+        public int capacity;
+
+        public SpscRingBuffer spsc;
+        public MpscRingBuffer mpsc;
+
+        @Setup public void setup() {
+            spsc = new SpscRingBuffer(capacity);
+            mpsc = new MpscRingBuffer(capacity);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Message {
+        public byte[] bytes;
+
+        @Setup public void setup(Buffers buffers) {
+            bytes = new byte[buffers.messageSize];
+        }
+    }
+
+    @Benchmark @Group("spsc") @GroupThreads(1)
+    public int spscWrite(Buffers buffers, Message message) {
+        return buffers.spsc.write(message.bytes, 0, message.bytes.length);
+    }
+
+    @Benchmark @Group("spsc") @GroupThreads(1)
+    public int spscRead(Buffers buffers, Message message) {
+        return buffers.spsc.read(message.bytes, 0, message.bytes.length);
+    }
+
+    @Benchmark @Group("mpsc") @GroupThreads(3)
+    public int mpscWrite(Buffers buffers, Message message) {
+        return buffers.mpsc.write(message.bytes, 0, message.bytes.length);
+    }
+
+    @Benchmark @Group("mpsc") @GroupThreads(1)
+    public int mpscRead(Buffers buffers, Message message) {
+        return buffers.mpsc.read(message.bytes, 0, message.bytes.length);
+    }
+}
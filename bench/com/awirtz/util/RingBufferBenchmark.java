@@ -0,0 +1,104 @@
+/*
+ * Byte-Array Ring Buffer Benchmark
+ */
+package com.awirtz.util;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Single-threaded JMH benchmarks comparing the copying
+ * {@link RingBuffer#write(byte[], int, int)} and
+ * {@link RingBuffer#read(byte[], int, int)} methods against the
+ * {@link RingBuffer#writer(RingBufferWriter, int)} and
+ * {@link RingBuffer#reader(RingBufferReader, int)} callback paths.
+ * 
+ * The capacity of the RingBuffer equals the message size, so every round
+ * trip fills the buffer completely and leaves the tail where it started.
+ * With "wrapped" set the tail starts half way along the array and every
+ * transfer is split in two; otherwise every transfer is contiguous.  A single
+ * byte cannot be split, so with a one-byte message the wrapped case uses a
+ * two-byte array instead, and every other transfer sits on its last byte and
+ * carries the pointer across the end of the array.
+ * 
+ * @author Aaron Meriwether
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RingBufferBenchmark {
+    @Param({"1", "16", "256", "4096", "65536"})
+    public int messageSize;
+
+    @Param({"false", "true"})
+    public boolean wrapped;
+
+    private RingBuffer ringBuffer;
+    private RingBuffer full;
+    private RingBuffer empty;
+    private byte[] message;
+    private RingBufferWriter writer;
+    private RingBufferReader reader;
+
+    @Setup public void setup() {
+        message = new byte[messageSize];
+        int capacity = wrapped ? Math.max(messageSize, 2) : messageSize;
+        // the starting tail is taken from the capacity, so that it is never
+        // rounded down to the start of the array
+        int tail = wrapped ? capacity / 2 : 0;
+        ringBuffer = new RingBuffer(new byte[capacity], tail, 0);
+        full = new RingBuffer(new byte[capacity], tail, capacity);
+        empty = new RingBuffer(new byte[capacity], tail, 0);
+        writer = new RingBufferWriter() {
+            int ptr;
+            @Override public void write(byte[] byteArray, int offset, int length) {
+                System.arraycopy(message, ptr, byteArray, offset, length);
+                ptr = (ptr + length) % messageSize;
+            }
+        };
+        reader = new RingBufferReader() {
+            int ptr;
+            @Override public void read(byte[] byteArray, int offset, int length) {
+                System.arraycopy(byteArray, offset, message, ptr, length);
+                ptr = (ptr + length) % messageSize;
+            }
+        };
+    }
+
+    @Benchmark public int writeRead() {
+        return ringBuffer.write(message, 0, messageSize)
+                + ringBuffer.read(message, 0, messageSize);
+    }
+
+    @Benchmark public int writerReader() {
+        return ringBuffer.writer(writer, messageSize)
+                + ringBuffer.reader(reader, messageSize);
+    }
+
+    @Benchmark public int putGet() {
+        ringBuffer.put(message, 0, messageSize);
+        ringBuffer.get(message, 0, messageSize);
+        return ringBuffer.getLength();
+    }
+
+    @Benchmark public int writeWhenFull() {
+        return full.write(message, 0, messageSize);
+    }
+
+    @Benchmark public int readWhenEmpty() {
+        return empty.read(message, 0, messageSize);
+    }
+}
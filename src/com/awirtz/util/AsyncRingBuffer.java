@@ -0,0 +1,459 @@
+/*
+ * Asynchronous Ring Buffer
+ */
+package com.awirtz.util;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+/**
+ * An asynchronous front end to a {@link RingBuffer}.
+ * Writes and reads which cannot proceed immediately are queued and return a
+ * {@link Future} which completes once space or data becomes available, and
+ * the readable segments of the buffer can be delivered to a
+ * {@link RingBufferSubscriber} as demand allows.
+ *
+ * Queued operations are served in order, whenever a write, read, request or
+ * close makes progress possible, by the thread which made it possible.
+ * Futures therefore complete, and subscribers are called, on that thread and
+ * while holding this object's lock, so they must not block.
+ *
+ * The underlying RingBuffer must only be accessed through this object.
+ *
+ * @author Aaron Meriwether
+ */
+public class AsyncRingBuffer {
+    private static final Runnable NOTHING = new Runnable() {
+        @Override public void run() {
+        }
+    };
+
+    private static final RingBufferSubscription REJECTED = new RingBufferSubscription() {
+        @Override public void request(long n) {
+        }
+        @Override public void cancel() {
+        }
+    };
+
+    private final RingBuffer ringBuffer;
+    private final Queue<Operation> writes = new ArrayDeque<Operation>();
+    private final Queue<Operation> reads = new ArrayDeque<Operation>();
+    private final Segments segments = new Segments();
+    private Subscription subscription = null;
+    private boolean closed = false;
+    private boolean serving = false;
+    private boolean again = false;
+
+    /**
+     * Create a new AsyncRingBuffer with its own RingBuffer.
+     * @param size The size in bytes of the ring buffer.
+     */
+    public AsyncRingBuffer(int size) {
+        this(new RingBuffer(size));
+    }
+
+    /**
+     * Create a new AsyncRingBuffer in front of an existing RingBuffer.
+     * @param ringBuffer The ring buffer.
+     */
+    public AsyncRingBuffer(RingBuffer ringBuffer) {
+        this.ringBuffer = ringBuffer;
+    }
+
+    /**
+     * Write the entire contents of a byte array region, waiting for space as
+     * necessary.  The region must not be modified until the write completes.
+     * Cancelling the write leaves any part of it already written in the
+     * buffer.
+     * @param buffer The source array.
+     * @param offset The offset in the source array to start from.
+     * @param length The number of bytes to write.
+     * @return A future whose value is the number of bytes written, which
+     * fails with an IllegalStateException if the buffer has been closed.
+     */
+    public Future<Integer> writeAsync(byte[] buffer, int offset, int length) {
+        return writeAsync(buffer, offset, length, null);
+    }
+
+    /**
+     * Write the entire contents of a byte array region, waiting for space as
+     * necessary, and invoke a callback when the write completes.  The
+     * callback runs on the thread which completes the write, which may be
+     * this one, while holding this object's lock, so it must not block.
+     * @param buffer The source array.
+     * @param offset The offset in the source array to start from.
+     * @param length The number of bytes to write.
+     * @param callback The callback, or null for none.
+     * @return A future whose value is the number of bytes written.
+     * @see #writeAsync(byte[], int, int)
+     */
+    public synchronized Future<Integer> writeAsync(byte[] buffer, int offset, int length,
+            RingBufferCallback callback) {
+        checkRegion(buffer, offset, length);
+        Operation write = new Operation(buffer, offset, length, callback);
+        if(closed) {
+            write.fail(new IllegalStateException("Buffer closed"));
+            return write;
+        }
+        writes.add(write);
+        serve();
+        return write;
+    }
+
+    /**
+     * Read into a byte array region, waiting until there is data.  Like an
+     * InputStream read, this completes as soon as any data is available,
+     * which may be less than requested.
+     * @param buffer The destination array.
+     * @param offset The offset in the destination array to start from.
+     * @param length The maximum number of bytes to read.
+     * @return A future whose value is the number of bytes read, or -1 if the
+     * buffer has been closed and emptied.
+     */
+    public Future<Integer> readAsync(byte[] buffer, int offset, int length) {
+        return readAsync(buffer, offset, length, null);
+    }
+
+    /**
+     * Read into a byte array region, waiting until there is data, and invoke
+     * a callback when the read completes.  The callback runs on the thread
+     * which completes the read, which may be this one, while holding this
+     * object's lock, so it must not block.
+     * @param buffer The destination array.
+     * @param offset The offset in the destination array to start from.
+     * @param length The maximum number of bytes to read.
+     * @param callback The callback, or null for none.
+     * @return A future whose value is the number of bytes read, or -1 if the
+     * buffer has been closed and emptied.
+     * @see #readAsync(byte[], int, int)
+     */
+    public synchronized Future<Integer> readAsync(byte[] buffer, int offset, int length,
+            RingBufferCallback callback) {
+        checkRegion(buffer, offset, length);
+        Operation read = new Operation(buffer, offset, length, callback);
+        reads.add(read);
+        serve();
+        return read;
+    }
+
+    /**
+     * Write as much as fits without waiting.  Queued writes are served first,
+     * so this writes nothing while any are pending.
+     * @see RingBuffer#write(byte[], int, int)
+     * @throws IllegalStateException If the buffer has been closed.
+     */
+    public synchronized int write(byte[] buffer, int offset, int length) {
+        if(closed) {
+            throw new IllegalStateException("Buffer closed");
+        }
+        int written = writes.isEmpty() ? ringBuffer.write(buffer, offset, length) : 0;
+        serve();
+        return written;
+    }
+
+    /**
+     * Read whatever is available without waiting.  Queued reads and a
+     * subscriber with outstanding demand are served first.
+     * @see RingBuffer#read(byte[], int, int)
+     */
+    public synchronized int read(byte[] buffer, int offset, int length) {
+        serve();
+        int read = ringBuffer.read(buffer, offset, length);
+        serve();
+        return read;
+    }
+
+    /**
+     * Subscribe to the readable segments of the buffer.  Only one subscriber
+     * is allowed at a time; any other is given a subscription which does
+     * nothing and then sent an error.  A subscriber consumes what it is sent,
+     * so it should not be mixed with reads.  If the subscriber throws from
+     * onNext, the subscription is cancelled and the exception is passed to
+     * its onError, leaving the segment in the buffer.
+     * @param subscriber The subscriber.
+     */
+    public synchronized void subscribe(RingBufferSubscriber subscriber) {
+        if(subscription != null && !subscription.cancelled) {
+            // onSubscribe must always come first, even for a rejection
+            subscriber.onSubscribe(REJECTED);
+            subscriber.onError(new IllegalStateException("Already subscribed"));
+            return;
+        }
+        subscription = new Subscription(subscriber);
+        subscriber.onSubscribe(subscription);
+        serve();
+    }
+
+    /**
+     * Close the buffer to further writes.  Writes already queued are still
+     * served; once they have been and the buffer is empty, pending reads
+     * complete with -1 and the subscriber is completed.
+     */
+    public synchronized void close() {
+        closed = true;
+        serve();
+    }
+
+    /**
+     * Determine whether the buffer has been closed.
+     * @return True if the buffer has been closed.
+     */
+    public synchronized boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * Get the number of writes waiting for space.
+     * @return The number of queued writes.
+     */
+    public synchronized int getPendingWrites() {
+        return writes.size();
+    }
+
+    /**
+     * Get the number of reads waiting for data.
+     * @return The number of queued reads.
+     */
+    public synchronized int getPendingReads() {
+        return reads.size();
+    }
+
+    /**
+     * Get the underlying RingBuffer.
+     * @return The underlying RingBuffer.
+     */
+    public RingBuffer getRingBuffer() {
+        return ringBuffer;
+    }
+
+    /**
+     * Serve queued writes, queued reads and the subscriber until none of them
+     * can make further progress.  Called again from inside a callback, this
+     * only arranges for another pass.
+     */
+    private void serve() {
+        if(serving) {
+            again = true;
+            return;
+        }
+        serving = true;
+        try {
+            do {
+                again = false;
+                serveWrites();
+                serveReads();
+                serveSubscriber();
+                if(closed && writes.isEmpty() && ringBuffer.getLength() == 0) {
+                    finish();
+                }
+            } while(again);
+        } finally {
+            serving = false;
+        }
+    }
+
+    /**
+     * Write as much of the queued writes as fits, in order.
+     */
+    private void serveWrites() {
+        Operation write;
+        while((write = writes.peek()) != null) {
+            if(write.isCancelled()) {
+                writes.remove();
+                continue;
+            }
+            int written = ringBuffer.write(write.buffer, write.offset + write.count, write.length - write.count);
+            write.count += written;
+            if(write.count < write.length) {
+                return;
+            }
+            writes.remove();
+            write.complete(write.count);
+        }
+    }
+
+    /**
+     * Satisfy as many of the queued reads as there is data for, in order.
+     */
+    private void serveReads() {
+        Operation read;
+        while((read = reads.peek()) != null) {
+            if(read.isCancelled()) {
+                reads.remove();
+                continue;
+            }
+            int toRead = ringBuffer.read(read.buffer, read.offset, read.length);
+            if(toRead == 0 && read.length > 0) {
+                return;
+            }
+            reads.remove();
+            read.complete(toRead);
+            // the space freed may let a queued write proceed
+            again |= toRead > 0 && !writes.isEmpty();
+        }
+    }
+
+    /**
+     * Deliver contiguous segments to the subscriber while it has demand.
+     */
+    private void serveSubscriber() {
+        Subscription current = subscription;
+        if(current == null) {
+            return;
+        }
+        segments.subscriber = current.subscriber;
+        while(current.demand > 0 && !current.cancelled && current == subscription) {
+            // limit each delivery to the part before the end of the array, so
+            // that the reader makes exactly one callback
+            int contiguous = Math.min(ringBuffer.getLength(),
+                    ringBuffer.getOffset() + ringBuffer.getMaxLength() - ringBuffer.getTail());
+            if(contiguous == 0) {
+                return;
+            }
+            current.demand--;
+            try {
+                ringBuffer.reader(segments, contiguous);
+            } catch(RuntimeException e) {
+                // the failure belongs to the subscriber, not to whichever
+                // write or close happened to feed it
+                current.cancelled = true;
+                current.subscriber.onError(e);
+                return;
+            }
+            again |= !writes.isEmpty();
+        }
+    }
+
+    /**
+     * Complete pending reads and the subscriber once the buffer has been
+     * closed and emptied.
+     */
+    private void finish() {
+        Operation read;
+        while((read = reads.poll()) != null) {
+            read.complete(-1);
+        }
+        Subscription current = subscription;
+        if(current != null && !current.cancelled) {
+            current.cancelled = true;
+            current.subscriber.onComplete();
+        }
+    }
+
+    /**
+     * Validate a byte array region.
+     */
+    private static void checkRegion(byte[] buffer, int offset, int length) {
+        if(offset < 0 || length < 0 || length > buffer.length - offset) {
+            throw new IndexOutOfBoundsException();
+        }
+    }
+
+    /**
+     * A queued write or read, which is also the future returned for it.
+     */
+    private static class Operation extends FutureTask<Integer> {
+        final byte[] buffer;
+        final int offset;
+        final int length;
+        final RingBufferCallback callback;
+        int count = 0;
+
+        Operation(byte[] buffer, int offset, int length, RingBufferCallback callback) {
+            super(NOTHING, null);
+            this.buffer = buffer;
+            this.offset = offset;
+            this.length = length;
+            this.callback = callback;
+        }
+
+        /**
+         * Pass the outcome to the callback.  A callback which throws is
+         * reported to the thread's uncaught exception handler rather than to
+         * whichever unrelated write or read completed the operation.
+         */
+        @Override protected void done() {
+            if(callback == null) {
+                return;
+            }
+            try {
+                int result;
+                try {
+                    result = get();
+                } catch(CancellationException e) {
+                    callback.failed(e);
+                    return;
+                } catch(ExecutionException e) {
+                    callback.failed(e.getCause());
+                    return;
+                } catch(InterruptedException e) {
+                    // the operation is already complete, so get cannot wait
+                    throw new IllegalStateException(e);
+                }
+                callback.completed(result);
+            } catch(RuntimeException e) {
+                Thread thread = Thread.currentThread();
+                thread.getUncaughtExceptionHandler().uncaughtException(thread, e);
+            }
+        }
+
+        void complete(int result) {
+            set(result);
+        }
+
+        void fail(Throwable error) {
+            setException(error);
+        }
+    }
+
+    /**
+     * Hands each segment read from the ring buffer to the subscriber.
+     */
+    private static class Segments implements RingBufferReader {
+        RingBufferSubscriber subscriber;
+
+        @Override public void read(byte[] buffer, int offset, int length) {
+            subscriber.onNext(ByteBuffer.wrap(buffer, offset, length).asReadOnlyBuffer());
+        }
+    }
+
+    /**
+     * The current subscriber's demand and state.
+     */
+    private class Subscription implements RingBufferSubscription {
+        final RingBufferSubscriber subscriber;
+        long demand = 0;
+        boolean cancelled = false;
+
+        Subscription(RingBufferSubscriber subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        @Override public void request(long n) {
+            synchronized(AsyncRingBuffer.this) {
+                if(cancelled) {
+                    return;
+                }
+                if(n <= 0) {
+                    cancelled = true;
+                    subscriber.onError(new IllegalArgumentException("Non-positive request: " + n));
+                    return;
+                }
+                // saturate rather than overflow, as unbounded demand
+                demand = demand + n < 0 ? Long.MAX_VALUE : demand + n;
+                serve();
+            }
+        }
+
+        @Override public void cancel() {
+            synchronized(AsyncRingBuffer.this) {
+                cancelled = true;
+            }
+        }
+    }
+}
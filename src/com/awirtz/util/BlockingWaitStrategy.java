@@ -0,0 +1,48 @@
+/*
+ * Blocking Wait Strategy
+ */
+package com.awirtz.util;
+
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A {@link WaitStrategy} which waits on a lock and condition variable.
+ * Wake-ups are never missed and waiting threads use no CPU at all, but every
+ * signal acquires the lock, so this costs the most on the fast path.
+ * 
+ * @author Aaron Meriwether
+ */
+public class BlockingWaitStrategy implements WaitStrategy {
+    private final Lock lock = new ReentrantLock();
+    private final Condition changed = lock.newCondition();
+
+    @Override public boolean await(WaitCondition condition, long nanos)
+            throws InterruptedException {
+        if(condition.isSatisfied()) {
+            return true;
+        }
+        lock.lockInterruptibly();
+        try {
+            while(!condition.isSatisfied()) {
+                if(nanos <= 0) {
+                    return false;
+                }
+                nanos = changed.awaitNanos(nanos);
+            }
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override public void signal() {
+        lock.lock();
+        try {
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+}
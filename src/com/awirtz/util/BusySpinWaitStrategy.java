@@ -0,0 +1,33 @@
+/*
+ * Busy-Spin Wait Strategy
+ */
+package com.awirtz.util;
+
+/**
+ * A {@link WaitStrategy} which spins on the condition without ever giving up
+ * the CPU.  This gives the lowest latency, but each waiting thread consumes a
+ * whole core, so it should only be used where threads are pinned to
+ * dedicated cores.
+ * 
+ * @author Aaron Meriwether
+ */
+public class BusySpinWaitStrategy implements WaitStrategy {
+
+    @Override public boolean await(WaitCondition condition, long nanos)
+            throws InterruptedException {
+        long start = System.nanoTime();
+        while(!condition.isSatisfied()) {
+            if(Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+            if(System.nanoTime() - start >= nanos) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override public void signal() {
+        // spinning threads notice changes by themselves
+    }
+}
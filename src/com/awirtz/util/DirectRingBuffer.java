@@ -0,0 +1,450 @@
+/*
+ * Direct Ring Buffer
+ */
+package com.awirtz.util;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.channels.ScatteringByteChannel;
+
+/**
+ * A ring buffer implementation on top of a ByteBuffer.
+ * This behaves exactly like {@link RingBuffer}, but the storage may be a
+ * direct ByteBuffer living outside of the garbage-collected heap, so that
+ * large buffers do not burden the collector and regions of the buffer can be
+ * handed straight to NIO channels without an intermediate copy.
+ *
+ * @author Aaron Meriwether
+ */
+public class DirectRingBuffer {
+    private final ByteBuffer byteBuffer;
+    private final ByteBuffer copyView;
+    private final ByteBuffer segmentView;
+    private final ByteBuffer[] channelViews;
+    private int tail = 0;
+    private int length = 0;
+
+    /**
+     * Create a new DirectRingBuffer of the specified size, backed by newly
+     * allocated direct memory.
+     * @param size The size in bytes of the DirectRingBuffer.
+     */
+    public DirectRingBuffer(int size) {
+        this(ByteBuffer.allocateDirect(size));
+    }
+
+    /**
+     * Turn an existing ByteBuffer into a DirectRingBuffer.
+     * The bytes between the position and the limit of the supplied buffer
+     * are used as the storage; the buffer's own position and limit are not
+     * modified afterwards.
+     * @param buffer A ByteBuffer to be used as a DirectRingBuffer.
+     */
+    public DirectRingBuffer(ByteBuffer buffer) {
+        byteBuffer = buffer.slice();
+        copyView = byteBuffer.duplicate();
+        segmentView = byteBuffer.duplicate();
+        channelViews = new ByteBuffer[] {
+            byteBuffer.duplicate(), byteBuffer.duplicate()
+        };
+    }
+
+    /**
+     * Turn a ByteBuffer which already contains data into a DirectRingBuffer.
+     * @param buffer A ByteBuffer to be used as a DirectRingBuffer.
+     * @param tail The pointer to the beginning of the data, relative to the
+     * position of the buffer.
+     * @param length The length of the data in the buffer.
+     */
+    public DirectRingBuffer(ByteBuffer buffer, int tail, int length) {
+        this(buffer);
+        this.tail = tail;
+        this.length = length;
+    }
+
+    /**
+     * Write to the DirectRingBuffer from a byte array.
+     * If the write exceeds the free space in the DirectRingBuffer, only part
+     * of the data will be written.
+     *
+     * @param buffer A byte array from which the data will be copied.
+     * @param offset The offset in the byte array where the data begins.
+     * @param length The number of bytes to be written.
+     * @return The number of bytes successfully written to the DirectRingBuffer.
+     * This may be less than the requested length if there is insufficient free
+     * space in the DirectRingBuffer, or zero if the DirectRingBuffer is full.
+     */
+    public int write(byte[] buffer, int offset, int length) {
+        int capacity = byteBuffer.capacity();
+        int head = wrap(this.tail + this.length);
+        int toEnd = capacity - head;
+        // if the request exceeds the free space, write as much as possible
+        int toWrite = Math.min(length, capacity - this.length);
+        if(toWrite > toEnd) {
+            // write from the head to the end
+            view(copyView, head, toEnd).put(buffer, offset, toEnd);
+            // write the remainder from the beginning
+            view(copyView, 0, toWrite - toEnd).put(buffer, offset + toEnd, toWrite - toEnd);
+        } else {
+            // write the whole thing at once
+            view(copyView, head, toWrite).put(buffer, offset, toWrite);
+        }
+        // writing increases the length
+        this.length += toWrite;
+        return toWrite;
+    }
+
+    /**
+     * Write to the DirectRingBuffer from the remaining bytes of a ByteBuffer.
+     * If the write exceeds the free space in the DirectRingBuffer, only part
+     * of the data will be written.  The position of the source buffer is
+     * advanced by the number of bytes written.
+     *
+     * @param source A ByteBuffer from which the data will be copied.
+     * @return The number of bytes successfully written to the DirectRingBuffer.
+     * This may be less than the remaining length of the source if there is
+     * insufficient free space in the DirectRingBuffer, or zero if the
+     * DirectRingBuffer is full.
+     */
+    public int write(ByteBuffer source) {
+        int capacity = byteBuffer.capacity();
+        int head = wrap(this.tail + this.length);
+        int toEnd = capacity - head;
+        // if the request exceeds the free space, write as much as possible
+        int toWrite = Math.min(source.remaining(), capacity - this.length);
+        int limit = source.limit();
+        if(toWrite > toEnd) {
+            // write from the head to the end
+            source.limit(source.position() + toEnd);
+            view(copyView, head, toEnd).put(source);
+            // write the remainder from the beginning
+            source.limit(source.position() + toWrite - toEnd);
+            view(copyView, 0, toWrite - toEnd).put(source);
+        } else {
+            // write the whole thing at once
+            source.limit(source.position() + toWrite);
+            view(copyView, head, toWrite).put(source);
+        }
+        source.limit(limit);
+        // writing increases the length
+        this.length += toWrite;
+        return toWrite;
+    }
+
+    /**
+     * Perform a write operation via callbacks on a supplied object.
+     * This is basically an inversion of the DirectRingBuffer "write" method in
+     * which the caller supplies its own simple "write" method which will be
+     * invoked zero, one, or two times against a view of the DirectRingBuffer's
+     * internal storage to complete the operation.
+     *
+     * This is useful to avoid an intermediate buffer when reading from a
+     * source such as a channel into a DirectRingBuffer.
+     *
+     * @param writer An object implementing the DirectRingBufferWriter interface.
+     * @param length The number of bytes to be written.
+     * @return The number of bytes successfully written to the DirectRingBuffer.
+     * This may be less than the requested length if there is insufficient free
+     * space in the DirectRingBuffer, or zero if the DirectRingBuffer is full.
+     */
+    public int writer(DirectRingBufferWriter writer, int length) {
+        int capacity = byteBuffer.capacity();
+        int head = wrap(this.tail + this.length);
+        int toEnd = capacity - head;
+        // if the request exceeds the free space, write as much as possible
+        int toWrite = Math.min(length, capacity - this.length);
+        if(toWrite > toEnd) {
+            // write from the head to the end
+            writer.write(view(segmentView, head, toEnd));
+            // write the remainder from the beginning
+            writer.write(view(segmentView, 0, toWrite - toEnd));
+        } else {
+            // write the whole thing at once
+            writer.write(view(segmentView, head, toWrite));
+        }
+        // writing increases the length
+        this.length += toWrite;
+        return toWrite;
+    }
+
+    /**
+     * Read from the DirectRingBuffer into a byte array.
+     *
+     * @param buffer A byte array in which the read data will be placed.
+     * @param offset The offset in the byte array where the read data should be placed.
+     * @param length The number of bytes to be read.
+     * @return The number of bytes successfully read from the DirectRingBuffer.
+     * This may be less than the requested length if there were fewer bytes in
+     * the buffer, or zero if the buffer was empty.
+     */
+    public int read(byte[] buffer, int offset, int length) {
+        int capacity = byteBuffer.capacity();
+        int toEnd = capacity - this.tail;
+        // if the request exceeds the available data, read as much as is available
+        int toRead = Math.min(length, this.length);
+        if(toRead > toEnd) {
+            // read from the tail to the end
+            view(copyView, this.tail, toEnd).get(buffer, offset, toEnd);
+            // read the requested remainder from the beginning
+            view(copyView, 0, toRead - toEnd).get(buffer, offset + toEnd, toRead - toEnd);
+        } else {
+            // read the whole requested thing at once
+            view(copyView, this.tail, toRead).get(buffer, offset, toRead);
+        }
+        // reading moves the tail and decreases the length
+        this.tail = wrap(this.tail + toRead);
+        this.length -= toRead;
+        return toRead;
+    }
+
+    /**
+     * Read from the DirectRingBuffer into the remaining space of a ByteBuffer.
+     * The position of the destination buffer is advanced by the number of
+     * bytes read.
+     *
+     * @param destination A ByteBuffer in which the read data will be placed.
+     * @return The number of bytes successfully read from the DirectRingBuffer.
+     * This may be less than the remaining space of the destination if there
+     * were fewer bytes in the buffer, or zero if the buffer was empty.
+     */
+    public int read(ByteBuffer destination) {
+        int capacity = byteBuffer.capacity();
+        int toEnd = capacity - this.tail;
+        // if the request exceeds the available data, read as much as is available
+        int toRead = Math.min(destination.remaining(), this.length);
+        if(toRead > toEnd) {
+            // read from the tail to the end
+            destination.put(view(copyView, this.tail, toEnd));
+            // read the requested remainder from the beginning
+            destination.put(view(copyView, 0, toRead - toEnd));
+        } else {
+            // read the whole requested thing at once
+            destination.put(view(copyView, this.tail, toRead));
+        }
+        // reading moves the tail and decreases the length
+        this.tail = wrap(this.tail + toRead);
+        this.length -= toRead;
+        return toRead;
+    }
+
+    /**
+     * Perform a read operation via callbacks on a supplied object.
+     * This is basically an inversion of the DirectRingBuffer "read" method in
+     * which the caller supplies its own simple "read" method which will be
+     * invoked zero, one, or two times against a view of the DirectRingBuffer's
+     * internal storage to complete the operation.
+     *
+     * This is useful to avoid an intermediate buffer when reading from a
+     * DirectRingBuffer into a destination such as a channel.
+     *
+     * @param reader An object implementing the DirectRingBufferReader interface.
+     * @param length The number of bytes to be read.
+     * @return The number of bytes successfully read from the DirectRingBuffer.
+     * This may be less than the requested length if there were fewer bytes in
+     * the buffer, or zero if the buffer was empty.
+     */
+    public int reader(DirectRingBufferReader reader, int length) {
+        int capacity = byteBuffer.capacity();
+        int toEnd = capacity - this.tail;
+        // if the request exceeds the available data, read as much as is available
+        int toRead = Math.min(length, this.length);
+        if(toRead > toEnd) {
+            // read from the tail to the end
+            reader.read(view(segmentView, this.tail, toEnd));
+            // read the requested remainder from the beginning
+            reader.read(view(segmentView, 0, toRead - toEnd));
+        } else {
+            // read the whole requested thing at once
+            reader.read(view(segmentView, this.tail, toRead));
+        }
+        // reading moves the tail and decreases the length
+        this.tail = wrap(this.tail + toRead);
+        this.length -= toRead;
+        return toRead;
+    }
+
+    /**
+     * Fill the DirectRingBuffer from a channel.
+     * The free space is presented to the channel as up to two ByteBuffer
+     * views so that a wrapped transfer is satisfied by a single vectored
+     * read.  When the storage is direct the channel reads straight into it.
+     *
+     * @param channel The channel from which the data will be read.
+     * @return The number of bytes read into the DirectRingBuffer, possibly
+     * zero, or -1 if the channel has reached end-of-stream.
+     * @throws IOException If the channel read fails.
+     */
+    public int readFrom(ScatteringByteChannel channel) throws IOException {
+        return readFrom(channel, byteBuffer.capacity());
+    }
+
+    /**
+     * Fill the DirectRingBuffer from a channel, reading at most the specified
+     * number of bytes.
+     *
+     * @param channel The channel from which the data will be read.
+     * @param length The maximum number of bytes to be read.
+     * @return The number of bytes read into the DirectRingBuffer, possibly
+     * zero, or -1 if the channel has reached end-of-stream.
+     * This may be less than the requested length if there is insufficient free
+     * space in the DirectRingBuffer, or zero if the DirectRingBuffer is full.
+     * @throws IOException If the channel read fails.
+     * @see #readFrom(ScatteringByteChannel)
+     */
+    public int readFrom(ScatteringByteChannel channel, int length) throws IOException {
+        int capacity = byteBuffer.capacity();
+        int head = wrap(this.tail + this.length);
+        int toEnd = capacity - head;
+        // if the request exceeds the free space, read as much as possible
+        int toWrite = Math.min(length, capacity - this.length);
+        if(toWrite == 0) {
+            return 0;
+        }
+        long result;
+        if(toWrite > toEnd) {
+            // fill from the head to the end and the remainder from the beginning
+            view(channelViews[0], head, toEnd);
+            view(channelViews[1], 0, toWrite - toEnd);
+            result = channel.read(channelViews, 0, 2);
+        } else {
+            // fill the whole thing at once
+            view(channelViews[0], head, toWrite);
+            result = channel.read(channelViews, 0, 1);
+        }
+        // writing increases the length
+        if(result > 0) {
+            this.length += (int)result;
+        }
+        return (int)result;
+    }
+
+    /**
+     * Drain the DirectRingBuffer into a channel.
+     * The data is presented to the channel as up to two ByteBuffer views so
+     * that a wrapped transfer is satisfied by a single vectored write.  When
+     * the storage is direct the channel writes straight from it.
+     *
+     * @param channel The channel to which the data will be written.
+     * @return The number of bytes written from the DirectRingBuffer, possibly
+     * zero.
+     * @throws IOException If the channel write fails.
+     */
+    public int writeTo(GatheringByteChannel channel) throws IOException {
+        return writeTo(channel, byteBuffer.capacity());
+    }
+
+    /**
+     * Drain the DirectRingBuffer into a channel, writing at most the specified
+     * number of bytes.
+     *
+     * @param channel The channel to which the data will be written.
+     * @param length The maximum number of bytes to be written.
+     * @return The number of bytes written from the DirectRingBuffer.
+     * This may be less than the requested length if there were fewer bytes in
+     * the buffer or the channel accepted fewer, or zero if the buffer was
+     * empty.
+     * @throws IOException If the channel write fails.
+     * @see #writeTo(GatheringByteChannel)
+     */
+    public int writeTo(GatheringByteChannel channel, int length) throws IOException {
+        int capacity = byteBuffer.capacity();
+        int toEnd = capacity - this.tail;
+        // if the request exceeds the available data, write as much as is available
+        int toRead = Math.min(length, this.length);
+        if(toRead == 0) {
+            return 0;
+        }
+        long result;
+        if(toRead > toEnd) {
+            // drain from the tail to the end and the remainder from the beginning
+            view(channelViews[0], this.tail, toEnd);
+            view(channelViews[1], 0, toRead - toEnd);
+            result = channel.write(channelViews, 0, 2);
+        } else {
+            // drain the whole thing at once
+            view(channelViews[0], this.tail, toRead);
+            result = channel.write(channelViews, 0, 1);
+        }
+        // reading moves the tail and decreases the length
+        this.tail = wrap(this.tail + (int)result);
+        this.length -= (int)result;
+        return (int)result;
+    }
+
+    /**
+     * Point a reusable view at a region of the internal storage.
+     * @param view A duplicate of the internal storage.
+     * @param index The index at which the region begins.
+     * @param length The length of the region.
+     * @return The view, positioned and limited to the region.
+     */
+    private static ByteBuffer view(ByteBuffer view, int index, int length) {
+        view.clear();
+        view.position(index);
+        view.limit(index + length);
+        return view;
+    }
+
+    /**
+     * Reduce a pointer which may have run past the end of the ByteBuffer back
+     * into range.  Both the tail and the length are already in range, so at
+     * most one subtraction is needed and the division of a modulo is avoided.
+     * @param pointer A pointer less than twice the capacity.
+     * @return The equivalent pointer within the ByteBuffer.
+     */
+    private int wrap(int pointer) {
+        return pointer < byteBuffer.capacity() ? pointer : pointer - byteBuffer.capacity();
+    }
+
+    /**
+     * Get the length of the data contained in the DirectRingBuffer.
+     * @return The length of the data in bytes.
+     */
+    public int getLength() {
+        return length;
+    }
+
+    /**
+     * Get the maximum capacity of the DirectRingBuffer.
+     * @return The maximum capacity in bytes.
+     */
+    public int getMaxLength() {
+        return byteBuffer.capacity();
+    }
+
+    /**
+     * Get the size of the unused space in the DirectRingBuffer.
+     * @return The unused capacity in bytes.
+     */
+    public int getFreeSpace() {
+        return byteBuffer.capacity() - length;
+    }
+
+    /**
+     * Get the underlying ByteBuffer.
+     * @return The underlying ByteBuffer.
+     */
+    public ByteBuffer getByteBuffer() {
+        return byteBuffer;
+    }
+
+    /**
+     * Get the tail pointer for the underlying ByteBuffer.
+     * @return The tail pointer.
+     */
+    public int getTail() {
+        return tail;
+    }
+
+    @Override public String toString() {
+        StringBuilder sb = new StringBuilder("[");
+        for(int i = 0; i < byteBuffer.capacity(); i++) {
+            if(i > 0) {
+                sb.append(", ");
+            }
+            sb.append(byteBuffer.get(i));
+        }
+        return sb.append("], ").append(tail).append(", ").append(length).toString();
+    }
+}
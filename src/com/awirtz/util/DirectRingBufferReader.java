@@ -0,0 +1,28 @@
+/*
+ * Direct Ring Buffer Reader
+ */
+package com.awirtz.util;
+
+import java.nio.ByteBuffer;
+
+/**
+ * An interface describing the callback read method.  This is used by
+ * {@link DirectRingBuffer#reader(DirectRingBufferReader, int)}
+ * to allow more efficient pipelining.
+ * 
+ * @author Aaron Meriwether
+ */
+public interface DirectRingBufferReader {
+    
+    /**
+     * A callback method which {@link DirectRingBuffer} will invoke.
+     * This method will be invoked zero, one, or two times as dictated by
+     * the DirectRingBuffer logic in order to fulfill the
+     * {@link DirectRingBuffer#reader(DirectRingBufferReader, int)} request.
+     * 
+     * @param segment A view of the internal storage of the DirectRingBuffer
+     * object whose remaining bytes need to be read.  The view is reused
+     * between calls and must not be retained.
+     */
+    public void read(ByteBuffer segment);
+}
@@ -0,0 +1,28 @@
+/*
+ * Direct Ring Buffer Writer
+ */
+package com.awirtz.util;
+
+import java.nio.ByteBuffer;
+
+/**
+ * An interface describing the callback write method.  This is used by
+ * {@link DirectRingBuffer#writer(DirectRingBufferWriter, int)}
+ * to allow more efficient pipelining.
+ * 
+ * @author Aaron Meriwether
+ */
+public interface DirectRingBufferWriter {
+    
+    /**
+     * A callback method which {@link DirectRingBuffer} will invoke.
+     * This method will be invoked zero, one, or two times as dictated by
+     * the DirectRingBuffer logic in order to fulfill the
+     * {@link DirectRingBuffer#writer(DirectRingBufferWriter, int)} request.
+     * 
+     * @param segment A view of the internal storage of the DirectRingBuffer
+     * object whose remaining bytes need to be written.  The view is reused
+     * between calls and must not be retained.
+     */
+    public void write(ByteBuffer segment);
+}
@@ -0,0 +1,307 @@
+/*
+ * Elastic Byte-Array Ring Buffer
+ */
+package com.awirtz.util;
+
+import java.io.IOException;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.channels.ScatteringByteChannel;
+
+/**
+ * A {@link RingBuffer} whose capacity follows demand.
+ * A write which does not fit grows the byte array, doubling its size or more
+ * as required, up to a configured maximum; only beyond that maximum is a
+ * write cut short.  A read which empties the buffer returns it straight to
+ * its initial size, since there is nothing to copy, so a buffer grown by a
+ * burst only holds the larger array until the burst has been drained.  A
+ * buffer which stays in use but at most a quarter full is halved after a
+ * run of such reads, but never below its initial size.
+ *
+ * The data is unwrapped into the new array whenever the capacity changes, so
+ * the result of {@link #getByteArray()} is only valid until the next write or
+ * read.
+ *
+ * @author Aaron Meriwether
+ */
+public class ElasticRingBuffer extends RingBuffer {
+    /**
+     * The default number of consecutive low-occupancy reads which do not
+     * empty the buffer after which the capacity is halved.
+     */
+    public static final int DEFAULT_SHRINK_DELAY = 1024;
+
+    private final int initialSize;
+    private final int maxSize;
+    private final int shrinkDelay;
+    private int lowReads = 0;
+
+    /**
+     * Create a new ElasticRingBuffer.
+     * @param initialSize The initial and minimum size in bytes.
+     * @param maxSize The maximum size in bytes.
+     */
+    public ElasticRingBuffer(int initialSize, int maxSize) {
+        this(initialSize, maxSize, DEFAULT_SHRINK_DELAY);
+    }
+
+    /**
+     * Create a new ElasticRingBuffer with a specific shrink delay.
+     * @param initialSize The initial and minimum size in bytes.
+     * @param maxSize The maximum size in bytes.
+     * @param shrinkDelay The number of consecutive reads leaving the buffer
+     * at most a quarter full after which the capacity is halved.
+     */
+    public ElasticRingBuffer(int initialSize, int maxSize, int shrinkDelay) {
+        super(initialSize);
+        if(maxSize < initialSize) {
+            throw new IllegalArgumentException("Maximum size " + maxSize
+                    + " is less than initial size " + initialSize);
+        }
+        if(shrinkDelay < 1) {
+            throw new IllegalArgumentException("Shrink delay must be positive: " + shrinkDelay);
+        }
+        this.initialSize = initialSize;
+        this.maxSize = maxSize;
+        this.shrinkDelay = shrinkDelay;
+    }
+
+    /**
+     * Write to the ElasticRingBuffer from a byte array, growing it as
+     * necessary.
+     * @see RingBuffer#write(byte[], int, int)
+     */
+    @Override public int write(byte[] buffer, int offset, int length) {
+        grow(length);
+        return super.write(buffer, offset, length);
+    }
+
+    /**
+     * Perform a write operation via callbacks on a supplied object, growing
+     * the ElasticRingBuffer as necessary.
+     * @see RingBuffer#writer(RingBufferWriter, int)
+     */
+    @Override public int writer(RingBufferWriter writer, int length) {
+        grow(length);
+        return super.writer(writer, length);
+    }
+
+    /**
+     * Write a single byte to the ElasticRingBuffer, growing it as necessary.
+     * @see RingBuffer#put(byte)
+     */
+    @Override public boolean put(byte b) {
+        grow(1);
+        return super.put(b);
+    }
+
+    /**
+     * Write a small record to the ElasticRingBuffer in its entirety, growing
+     * it as necessary.
+     * @see RingBuffer#put(byte[], int, int)
+     */
+    @Override public boolean put(byte[] buffer, int offset, int length) {
+        grow(length);
+        return super.put(buffer, offset, length);
+    }
+
+    /**
+     * Write a short to the ElasticRingBuffer, growing it as necessary.
+     * @see RingBuffer#putShort(short)
+     */
+    @Override public boolean putShort(short value) {
+        grow(2);
+        return super.putShort(value);
+    }
+
+    /**
+     * Write an int to the ElasticRingBuffer, growing it as necessary.
+     * @see RingBuffer#putInt(int)
+     */
+    @Override public boolean putInt(int value) {
+        grow(4);
+        return super.putInt(value);
+    }
+
+    /**
+     * Write a long to the ElasticRingBuffer, growing it as necessary.
+     * @see RingBuffer#putLong(long)
+     */
+    @Override public boolean putLong(long value) {
+        grow(8);
+        return super.putLong(value);
+    }
+
+    /**
+     * Fill the ElasticRingBuffer from a channel.  The current free space is
+     * filled; the buffer only grows if it has no free space at all.
+     * @see RingBuffer#readFrom(ScatteringByteChannel)
+     */
+    @Override public int readFrom(ScatteringByteChannel channel) throws IOException {
+        grow(1);
+        return super.readFrom(channel, getFreeSpace());
+    }
+
+    /**
+     * Fill the ElasticRingBuffer from a channel, reading at most the specified
+     * number of bytes and growing it as necessary.
+     * @see RingBuffer#readFrom(ScatteringByteChannel, int)
+     */
+    @Override public int readFrom(ScatteringByteChannel channel, int length) throws IOException {
+        grow(length);
+        return super.readFrom(channel, length);
+    }
+
+    /**
+     * Read from the ElasticRingBuffer into a byte array.
+     * @see RingBuffer#read(byte[], int, int)
+     */
+    @Override public int read(byte[] buffer, int offset, int length) {
+        int toRead = super.read(buffer, offset, length);
+        shrink();
+        return toRead;
+    }
+
+    /**
+     * Perform a read operation via callbacks on a supplied object.
+     * @see RingBuffer#reader(RingBufferReader, int)
+     */
+    @Override public int reader(RingBufferReader reader, int length) {
+        int toRead = super.reader(reader, length);
+        shrink();
+        return toRead;
+    }
+
+    /**
+     * Read a single byte from the ElasticRingBuffer.
+     * @see RingBuffer#get()
+     */
+    @Override public int get() {
+        int b = super.get();
+        shrink();
+        return b;
+    }
+
+    /**
+     * Read a small record from the ElasticRingBuffer in its entirety.
+     * @see RingBuffer#get(byte[], int, int)
+     */
+    @Override public boolean get(byte[] buffer, int offset, int length) {
+        boolean read = super.get(buffer, offset, length);
+        shrink();
+        return read;
+    }
+
+    /**
+     * Read a short from the ElasticRingBuffer.
+     * @see RingBuffer#getShort()
+     */
+    @Override public short getShort() {
+        short value = super.getShort();
+        shrink();
+        return value;
+    }
+
+    /**
+     * Read an int from the ElasticRingBuffer.
+     * @see RingBuffer#getInt()
+     */
+    @Override public int getInt() {
+        int value = super.getInt();
+        shrink();
+        return value;
+    }
+
+    /**
+     * Read a long from the ElasticRingBuffer.
+     * @see RingBuffer#getLong()
+     */
+    @Override public long getLong() {
+        long value = super.getLong();
+        shrink();
+        return value;
+    }
+
+    /**
+     * Discard data from the ElasticRingBuffer.
+     * @see RingBuffer#skip(int)
+     */
+    @Override public int skip(int length) {
+        int toSkip = super.skip(length);
+        shrink();
+        return toSkip;
+    }
+
+    /**
+     * Drain the ElasticRingBuffer into a channel, writing at most the
+     * specified number of bytes.
+     * @see RingBuffer#writeTo(GatheringByteChannel, int)
+     */
+    @Override public int writeTo(GatheringByteChannel channel, int length) throws IOException {
+        int result = super.writeTo(channel, length);
+        shrink();
+        return result;
+    }
+
+    /**
+     * Grow the ElasticRingBuffer, as far as the maximum size allows, so that a
+     * write of the specified length will fit.
+     * @see RingBuffer#ensureFree(int)
+     */
+    @Override protected void ensureFree(int length) {
+        grow(length);
+    }
+
+    /**
+     * Grow the byte array, if the maximum size allows, so that a write of the
+     * specified length will fit.
+     * @param length The number of bytes about to be written.
+     */
+    private void grow(int length) {
+        int capacity = getMaxLength();
+        if(length <= capacity - getLength() || capacity == maxSize) {
+            return;
+        }
+        // double at least, so that a run of small writes grows geometrically
+        long required = Math.max((long)capacity * 2, (long)getLength() + length);
+        resize((int)Math.min(required, maxSize));
+        lowReads = 0;
+    }
+
+    /**
+     * Return the byte array to its initial size once it is empty, or halve
+     * it after enough consecutive reads have left it at most a quarter full.
+     */
+    private void shrink() {
+        int capacity = getMaxLength();
+        if(capacity == initialSize || getLength() > capacity / 4) {
+            lowReads = 0;
+            return;
+        }
+        if(getLength() == 0) {
+            // an empty buffer costs nothing to reallocate
+            resize(initialSize);
+            lowReads = 0;
+            return;
+        }
+        if(++lowReads >= shrinkDelay) {
+            resize(Math.max(capacity / 2, initialSize));
+            lowReads = 0;
+        }
+    }
+
+    /**
+     * Get the initial and minimum size of the ElasticRingBuffer.
+     * @return The minimum capacity in bytes.
+     */
+    public int getInitialSize() {
+        return initialSize;
+    }
+
+    /**
+     * Get the size beyond which the ElasticRingBuffer will not grow.
+     * @return The limit of the capacity in bytes.
+     */
+    public int getMaxSize() {
+        return maxSize;
+    }
+}
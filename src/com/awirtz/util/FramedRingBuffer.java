@@ -0,0 +1,274 @@
+/*
+ * Length-Prefixed Message Ring Buffer
+ */
+package com.awirtz.util;
+
+/**
+ * A message-oriented view of a {@link RingBuffer}.
+ * Each message is stored as a four-byte big-endian length prefix followed by
+ * the message bytes.  A message is only ever written if it fits in its
+ * entirety, and is only ever read as a whole, so a consumer never sees a
+ * partial record.
+ *
+ * In overwrite mode, a message which does not fit makes room by dropping the
+ * oldest whole messages, so the buffer keeps the most recent messages and a
+ * consumer still never sees a partial record.
+ *
+ * On an {@link ElasticRingBuffer}, the buffer grows to fit each message as
+ * far as its maximum size allows.
+ *
+ * The underlying RingBuffer must not be written or read directly while it is
+ * in use by a FramedRingBuffer, and must not itself overwrite old data.
+ *
+ * @author Aaron Meriwether
+ */
+public class FramedRingBuffer {
+    /**
+     * The number of bytes used by the length prefix of each message.
+     */
+    public static final int HEADER_LENGTH = 4;
+
+    private final RingBuffer ringBuffer;
+    private final byte[] header = new byte[HEADER_LENGTH];
+    private final boolean overwrite;
+    private long dropped = 0;
+
+    /**
+     * Create a new FramedRingBuffer on top of a new RingBuffer of the
+     * specified size.
+     * @param size The size in bytes of the RingBuffer, including the length
+     * prefixes.
+     */
+    public FramedRingBuffer(int size) {
+        this(new RingBuffer(size));
+    }
+
+    /**
+     * Create a new FramedRingBuffer on top of a new RingBuffer of the
+     * specified size, optionally in overwrite mode.
+     * @param size The size in bytes of the RingBuffer, including the length
+     * prefixes.
+     * @param overwrite True to drop the oldest messages to make room for new
+     * ones.
+     */
+    public FramedRingBuffer(int size, boolean overwrite) {
+        this(new RingBuffer(size), overwrite);
+    }
+
+    /**
+     * Create a new FramedRingBuffer on top of an existing RingBuffer.
+     * @param ringBuffer An empty RingBuffer, or one which only contains
+     * messages written by another FramedRingBuffer.
+     */
+    public FramedRingBuffer(RingBuffer ringBuffer) {
+        this(ringBuffer, false);
+    }
+
+    /**
+     * Create a new FramedRingBuffer on top of an existing RingBuffer,
+     * optionally in overwrite mode.
+     * @param ringBuffer An empty RingBuffer, or one which only contains
+     * messages written by another FramedRingBuffer.
+     * @param overwrite True to drop the oldest messages to make room for new
+     * ones.
+     */
+    public FramedRingBuffer(RingBuffer ringBuffer, boolean overwrite) {
+        this.ringBuffer = ringBuffer;
+        this.overwrite = overwrite;
+    }
+
+    /**
+     * Write a message to the FramedRingBuffer from a byte array.
+     *
+     * @param buffer A byte array from which the message will be copied.
+     * @param offset The offset in the byte array where the message begins.
+     * @param length The length of the message.
+     * @return True if the message was written, or false if there is
+     * insufficient free space for the whole message and its length prefix,
+     * in which case nothing is written.  In overwrite mode, this is only
+     * false if the message is too long for the buffer even when empty.
+     */
+    public boolean writeMessage(byte[] buffer, int offset, int length) {
+        // check the body before the prefix goes in, so that a bad range
+        // cannot leave a prefix without its message
+        if(offset < 0 || length < 0 || length > buffer.length - offset) {
+            throw new IndexOutOfBoundsException();
+        }
+        if(!writeHeader(length)) {
+            return false;
+        }
+        ringBuffer.write(buffer, offset, length);
+        return true;
+    }
+
+    /**
+     * Write a message to the FramedRingBuffer via callbacks on a supplied
+     * object.  The writer is given the internal byte array of the RingBuffer
+     * as in {@link RingBuffer#writer(RingBufferWriter, int)}, so a message
+     * can be encoded in place.
+     *
+     * @param writer An object implementing the RingBufferWriter interface.
+     * @param length The length of the message.
+     * @return True if the message was written, or false if there is
+     * insufficient free space for the whole message and its length prefix,
+     * in which case the writer is not invoked.  In overwrite mode, this is
+     * only false if the message is too long for the buffer even when empty.
+     * If the writer throws, the message is abandoned and nothing is left
+     * written.
+     */
+    public boolean writeMessage(RingBufferWriter writer, int length) {
+        if(!writeHeader(length)) {
+            return false;
+        }
+        boolean written = false;
+        try {
+            ringBuffer.writer(writer, length);
+            written = true;
+        } finally {
+            if(!written) {
+                // take back the prefix if the writer failed, so that the
+                // messages stay in frame
+                ringBuffer.unwrite(HEADER_LENGTH);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Get the length of the next message without consuming it.
+     * @return The length of the next message in bytes, or -1 if the
+     * FramedRingBuffer is empty.
+     */
+    public int peekLength() {
+        if(ringBuffer.getLength() < HEADER_LENGTH) {
+            return -1;
+        }
+        int length = 0;
+        for(int i = 0; i < HEADER_LENGTH; i++) {
+            length = (length << 8) | (ringBuffer.get(i) & 0xff);
+        }
+        return length;
+    }
+
+    /**
+     * Read the next message from the FramedRingBuffer into a byte array.
+     *
+     * @param buffer A byte array in which the message will be placed.
+     * @param offset The offset in the byte array where the message should be placed.
+     * @param length The space available in the byte array.
+     * @return The length of the message, or -1 if the FramedRingBuffer is
+     * empty.
+     * @throws IllegalArgumentException If the next message is longer than the
+     * available space, in which case it is not consumed.
+     */
+    public int readMessage(byte[] buffer, int offset, int length) {
+        int messageLength = peekLength();
+        if(messageLength < 0) {
+            return -1;
+        }
+        if(messageLength > length) {
+            throw new IllegalArgumentException("Message of " + messageLength
+                    + " bytes does not fit in " + length + " bytes");
+        }
+        ringBuffer.skip(HEADER_LENGTH);
+        return ringBuffer.read(buffer, offset, messageLength);
+    }
+
+    /**
+     * Read the next message from the FramedRingBuffer via callbacks on a
+     * supplied object.  The reader is given the internal byte array of the
+     * RingBuffer as in {@link RingBuffer#reader(RingBufferReader, int)}, so a
+     * message can be decoded in place; it is invoked once, or twice if the
+     * message wraps around the end of the array.
+     *
+     * @param reader An object implementing the RingBufferReader interface.
+     * @return The length of the message, or -1 if the FramedRingBuffer is
+     * empty.
+     */
+    public int readMessage(RingBufferReader reader) {
+        int messageLength = peekLength();
+        if(messageLength < 0) {
+            return -1;
+        }
+        ringBuffer.skip(HEADER_LENGTH);
+        return ringBuffer.reader(reader, messageLength);
+    }
+
+    /**
+     * Write the length prefix of a message if the whole message will fit,
+     * first dropping the oldest messages in overwrite mode.
+     * @param length The length of the message.
+     * @return True if the prefix was written.
+     */
+    private boolean writeHeader(int length) {
+        if(length < 0) {
+            throw new IllegalArgumentException("Negative message length: " + length);
+        }
+        long required = (long)HEADER_LENGTH + length;
+        if(required <= Integer.MAX_VALUE) {
+            // give an elastic buffer the chance to grow before the check
+            ringBuffer.ensureFree((int)required);
+        }
+        if(overwrite && required <= ringBuffer.getMaxLength()) {
+            while(required > ringBuffer.getFreeSpace()) {
+                // drop the oldest message with its length prefix
+                ringBuffer.discard(HEADER_LENGTH + peekLength());
+                dropped++;
+            }
+        }
+        if(required > ringBuffer.getFreeSpace()) {
+            return false;
+        }
+        header[0] = (byte)(length >>> 24);
+        header[1] = (byte)(length >>> 16);
+        header[2] = (byte)(length >>> 8);
+        header[3] = (byte)length;
+        ringBuffer.put(header, 0, HEADER_LENGTH);
+        return true;
+    }
+
+    /**
+     * Test whether the FramedRingBuffer contains no messages.
+     * @return True if there are no messages to be read.
+     */
+    public boolean isEmpty() {
+        return ringBuffer.getLength() == 0;
+    }
+
+    /**
+     * Get the largest message which could currently be written.
+     * @return The free space less the length prefix, in bytes.
+     */
+    public int getFreeSpace() {
+        return Math.max(ringBuffer.getFreeSpace() - HEADER_LENGTH, 0);
+    }
+
+    /**
+     * Determine whether the FramedRingBuffer drops old messages to make room.
+     * @return True if in overwrite mode.
+     */
+    public boolean isOverwrite() {
+        return overwrite;
+    }
+
+    /**
+     * Get the number of messages which have been dropped to make room for
+     * newer ones.
+     * @return The number of messages dropped in overwrite mode.
+     */
+    public long getDroppedMessages() {
+        return dropped;
+    }
+
+    /**
+     * Get the underlying RingBuffer.
+     * @return The underlying RingBuffer.
+     */
+    public RingBuffer getRingBuffer() {
+        return ringBuffer;
+    }
+
+    @Override public String toString() {
+        return ringBuffer.toString();
+    }
+}
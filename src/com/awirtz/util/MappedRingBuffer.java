@@ -0,0 +1,436 @@
+/*
+ * Memory-Mapped Ring Buffer
+ */
+package com.awirtz.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * A persistent ring buffer implementation on top of a memory-mapped file.
+ *
+ * The file begins with a small header holding the capacity and two
+ * free-running sequences: the head, which only the producer updates, and the
+ * tail, which only the consumer updates.  Because the data and both sequences
+ * live in the mapping, a process which reopens the file after a restart
+ * continues exactly where the previous one stopped, and a producer and a
+ * consumer in two different processes on the same host may share one file
+ * for zero-copy IPC.
+ *
+ * Crash consistency: data bytes are always stored before the sequence which
+ * publishes them, and each sequence is updated with a single aligned 8-byte
+ * store.  If only the process dies, the operating system still writes back
+ * every mapped page, so a reopened buffer never exposes a partially written
+ * region.  An operating system crash or power loss is a different matter:
+ * dirty pages reach the device in no particular order, so the header page
+ * may be written while the data it publishes is not.  A durable buffer
+ * closes that gap by forcing the data to the device before the head which
+ * publishes it, and the header afterwards; this costs two synchronous
+ * flushes per write.  A buffer which is not durable only survives a
+ * process crash.  In either case a consumed region may be delivered again
+ * after power loss unless {@link #force()} is called after reading.
+ *
+ * As with {@link SpscRingBuffer}, the write methods must only be used by the
+ * producer and the read methods only by the consumer.
+ *
+ * @author Aaron Meriwether
+ */
+public class MappedRingBuffer {
+    private static final int MAGIC = 0x52427566; // "RBuf"
+    private static final int MAGIC_OFFSET = 0;
+    private static final int CAPACITY_OFFSET = 4;
+    // the sequences sit on separate cache lines
+    private static final int HEAD_OFFSET = 64;
+    private static final int TAIL_OFFSET = 128;
+    private static final int HEADER_SIZE = 192;
+
+    private final MappedByteBuffer mapped;
+    private final ByteBuffer producerView;
+    private final ByteBuffer consumerView;
+    private final int capacity;
+    private final int mask;
+    private final boolean durable;
+    private volatile int fence;
+
+    /**
+     * Open a MappedRingBuffer file, creating it with the specified size if it
+     * is empty or does not yet exist.
+     * @param file The file which holds the MappedRingBuffer.
+     * @param size The size in bytes of the MappedRingBuffer.
+     * @throws IOException If the file cannot be mapped, or if it already
+     * holds a MappedRingBuffer of a different size.
+     */
+    public MappedRingBuffer(File file, int size) throws IOException {
+        this(file, size, false);
+    }
+
+    /**
+     * Open a MappedRingBuffer file, creating it with the specified size if it
+     * is empty or does not yet exist, and optionally making every write
+     * durable.
+     * @param file The file which holds the MappedRingBuffer.
+     * @param size The size in bytes of the MappedRingBuffer.
+     * @param durable True to force each write to the storage device before
+     * publishing it, so that it survives an operating system crash or power
+     * loss.
+     * @throws IOException If the file cannot be mapped, or if it already
+     * holds a MappedRingBuffer of a different size.
+     */
+    public MappedRingBuffer(File file, int size, boolean durable) throws IOException {
+        this.durable = durable;
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            boolean create = raf.length() == 0;
+            if(create && size < 0) {
+                throw new IOException("Not a MappedRingBuffer file: " + file);
+            }
+            if(create) {
+                raf.setLength(HEADER_SIZE + (long)size);
+            }
+            mapped = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, raf.length());
+            if(create) {
+                mapped.putInt(CAPACITY_OFFSET, size);
+                mapped.putLong(HEAD_OFFSET, 0);
+                mapped.putLong(TAIL_OFFSET, 0);
+                // the magic number is written last to mark the header valid
+                mapped.putInt(MAGIC_OFFSET, MAGIC);
+                mapped.force();
+            }
+        } finally {
+            // the mapping remains valid once the file is closed
+            raf.close();
+        }
+        if(mapped.getInt(MAGIC_OFFSET) != MAGIC) {
+            throw new IOException("Not a MappedRingBuffer file: " + file);
+        }
+        capacity = mapped.getInt(CAPACITY_OFFSET);
+        if(size >= 0 && capacity != size) {
+            throw new IOException("MappedRingBuffer file " + file + " has size "
+                    + capacity + ", not " + size);
+        }
+        if(mapped.capacity() < HEADER_SIZE + capacity) {
+            throw new IOException("Truncated MappedRingBuffer file: " + file);
+        }
+        // power-of-two capacities index by masking
+        mask = Integer.bitCount(capacity) == 1 ? capacity - 1 : -1;
+        mapped.position(HEADER_SIZE);
+        ByteBuffer data = mapped.slice();
+        data.limit(capacity);
+        producerView = data.duplicate();
+        consumerView = data.duplicate();
+    }
+
+    /**
+     * Open an existing MappedRingBuffer file, taking the size from its header.
+     * @param file The file which holds the MappedRingBuffer.
+     * @throws IOException If the file cannot be mapped or does not hold a
+     * MappedRingBuffer.
+     */
+    public MappedRingBuffer(File file) throws IOException {
+        this(file, -1, false);
+    }
+
+    /**
+     * Open an existing MappedRingBuffer file, taking the size from its header,
+     * and optionally making every write durable.
+     * @param file The file which holds the MappedRingBuffer.
+     * @param durable True to force each write to the storage device before
+     * publishing it.
+     * @throws IOException If the file cannot be mapped or does not hold a
+     * MappedRingBuffer.
+     * @see #MappedRingBuffer(File, int, boolean)
+     */
+    public MappedRingBuffer(File file, boolean durable) throws IOException {
+        this(file, -1, durable);
+    }
+
+    /**
+     * Write to the MappedRingBuffer from a byte array.
+     * If the write exceeds the free space in the MappedRingBuffer, only part
+     * of the data will be written.  This must only be called by the producer.
+     *
+     * @param buffer A byte array from which the data will be copied.
+     * @param offset The offset in the byte array where the data begins.
+     * @param length The number of bytes to be written.
+     * @return The number of bytes successfully written to the MappedRingBuffer.
+     * This may be less than the requested length if there is insufficient free
+     * space in the MappedRingBuffer, or zero if the MappedRingBuffer is full.
+     */
+    public int write(byte[] buffer, int offset, int length) {
+        long head = mapped.getLong(HEAD_OFFSET);
+        // if the request exceeds the free space, write as much as possible
+        int toWrite = (int)Math.min(length, capacity - (head - acquire(TAIL_OFFSET)));
+        int index = index(head);
+        int toEnd = capacity - index;
+        if(toWrite > toEnd) {
+            // write from the head to the end
+            view(producerView, index, toEnd).put(buffer, offset, toEnd);
+            // write the remainder from the beginning
+            view(producerView, 0, toWrite - toEnd).put(buffer, offset + toEnd, toWrite - toEnd);
+        } else {
+            // write the whole thing at once
+            view(producerView, index, toWrite).put(buffer, offset, toWrite);
+        }
+        // publish the written bytes to the consumer
+        if(toWrite > 0) {
+            publish(head + toWrite);
+        }
+        return toWrite;
+    }
+
+    /**
+     * Perform a write operation via callbacks on a supplied object.
+     * This is the mapped equivalent of
+     * {@link DirectRingBuffer#writer(DirectRingBufferWriter, int)}; the
+     * written bytes are not published until the callbacks have returned.
+     * This must only be called by the producer.
+     *
+     * @param writer An object implementing the DirectRingBufferWriter interface.
+     * @param length The number of bytes to be written.
+     * @return The number of bytes successfully written to the MappedRingBuffer.
+     * This may be less than the requested length if there is insufficient free
+     * space in the MappedRingBuffer, or zero if the MappedRingBuffer is full.
+     */
+    public int writer(DirectRingBufferWriter writer, int length) {
+        long head = mapped.getLong(HEAD_OFFSET);
+        // if the request exceeds the free space, write as much as possible
+        int toWrite = (int)Math.min(length, capacity - (head - acquire(TAIL_OFFSET)));
+        int index = index(head);
+        int toEnd = capacity - index;
+        if(toWrite > toEnd) {
+            // write from the head to the end
+            writer.write(view(producerView, index, toEnd));
+            // write the remainder from the beginning
+            writer.write(view(producerView, 0, toWrite - toEnd));
+        } else {
+            // write the whole thing at once
+            writer.write(view(producerView, index, toWrite));
+        }
+        // publish the written bytes to the consumer
+        if(toWrite > 0) {
+            publish(head + toWrite);
+        }
+        return toWrite;
+    }
+
+    /**
+     * Read from the MappedRingBuffer into a byte array.
+     * This must only be called by the consumer.
+     *
+     * @param buffer A byte array in which the read data will be placed.
+     * @param offset The offset in the byte array where the read data should be placed.
+     * @param length The number of bytes to be read.
+     * @return The number of bytes successfully read from the MappedRingBuffer.
+     * This may be less than the requested length if there were fewer bytes in
+     * the buffer, or zero if the buffer was empty.
+     */
+    public int read(byte[] buffer, int offset, int length) {
+        long tail = mapped.getLong(TAIL_OFFSET);
+        // if the request exceeds the available data, read as much as is available
+        int toRead = (int)Math.min(length, acquire(HEAD_OFFSET) - tail);
+        int index = index(tail);
+        int toEnd = capacity - index;
+        if(toRead > toEnd) {
+            // read from the tail to the end
+            view(consumerView, index, toEnd).get(buffer, offset, toEnd);
+            // read the requested remainder from the beginning
+            view(consumerView, 0, toRead - toEnd).get(buffer, offset + toEnd, toRead - toEnd);
+        } else {
+            // read the whole requested thing at once
+            view(consumerView, index, toRead).get(buffer, offset, toRead);
+        }
+        // release the read space back to the producer
+        if(toRead > 0) {
+            release(TAIL_OFFSET, tail + toRead);
+        }
+        return toRead;
+    }
+
+    /**
+     * Perform a read operation via callbacks on a supplied object.
+     * This is the mapped equivalent of
+     * {@link DirectRingBuffer#reader(DirectRingBufferReader, int)}; the read
+     * space is not released until the callbacks have returned.  This must
+     * only be called by the consumer.
+     *
+     * @param reader An object implementing the DirectRingBufferReader interface.
+     * @param length The number of bytes to be read.
+     * @return The number of bytes successfully read from the MappedRingBuffer.
+     * This may be less than the requested length if there were fewer bytes in
+     * the buffer, or zero if the buffer was empty.
+     */
+    public int reader(DirectRingBufferReader reader, int length) {
+        long tail = mapped.getLong(TAIL_OFFSET);
+        // if the request exceeds the available data, read as much as is available
+        int toRead = (int)Math.min(length, acquire(HEAD_OFFSET) - tail);
+        int index = index(tail);
+        int toEnd = capacity - index;
+        if(toRead > toEnd) {
+            // read from the tail to the end
+            reader.read(view(consumerView, index, toEnd));
+            // read the requested remainder from the beginning
+            reader.read(view(consumerView, 0, toRead - toEnd));
+        } else {
+            // read the whole requested thing at once
+            reader.read(view(consumerView, index, toRead));
+        }
+        // release the read space back to the producer
+        if(toRead > 0) {
+            release(TAIL_OFFSET, tail + toRead);
+        }
+        return toRead;
+    }
+
+    /**
+     * Flush the data and the header to the underlying storage device.
+     */
+    public void force() {
+        mapped.force();
+    }
+
+    /**
+     * Determine whether every write is forced to the storage device before
+     * it is published.
+     * @return True if the MappedRingBuffer is durable.
+     */
+    public boolean isDurable() {
+        return durable;
+    }
+
+    /**
+     * Publish written bytes by advancing the head, first forcing them to the
+     * storage device if the MappedRingBuffer is durable.
+     * @param head The new value of the head.
+     */
+    private void publish(long head) {
+        if(durable) {
+            // the whole mapping is flushed, since ranged flushes need a newer
+            // JDK, but the header still holds the old head at this point
+            mapped.force();
+        }
+        release(HEAD_OFFSET, head);
+        if(durable) {
+            mapped.force();
+        }
+    }
+
+    /**
+     * Read the sequence owned by the other side, ordering it before any
+     * subsequent access to the data it covers.
+     *
+     * Java 6 has no fence API, so the ordering comes from the barriers which
+     * HotSpot emits around accesses to the volatile fence field.  This only
+     * orders threads within one JVM; between processes it relies on the
+     * hardware keeping plain stores in order, as x86 does.
+     * @param offset The header offset of the sequence.
+     * @return The value of the sequence.
+     */
+    private long acquire(int offset) {
+        long sequence = mapped.getLong(offset);
+        loadFence();
+        return sequence;
+    }
+
+    /**
+     * Update the sequence owned by this side, ordering it after all prior
+     * access to the data it covers.
+     * @param offset The header offset of the sequence.
+     * @param sequence The new value of the sequence.
+     * @see #acquire(int)
+     */
+    private void release(int offset, long sequence) {
+        storeFence();
+        mapped.putLong(offset, sequence);
+    }
+
+    /**
+     * Keep later memory accesses below earlier reads by reading the volatile
+     * fence field.  Only the barrier matters; the value is always zero.
+     * @return The value of the fence field.
+     */
+    private int loadFence() {
+        return fence;
+    }
+
+    /**
+     * Keep earlier memory accesses above later writes by writing the volatile
+     * fence field.
+     */
+    private void storeFence() {
+        fence = 0;
+    }
+
+    /**
+     * Point a reusable view at a region of the data.
+     * @param view A duplicate of the data region.
+     * @param index The index at which the region begins.
+     * @param length The length of the region.
+     * @return The view, positioned and limited to the region.
+     */
+    private static ByteBuffer view(ByteBuffer view, int index, int length) {
+        view.clear();
+        view.position(index);
+        view.limit(index + length);
+        return view;
+    }
+
+    /**
+     * Map a free-running sequence onto an index in the data region.  When the
+     * capacity is a power of two this is a mask; otherwise it falls back to a
+     * modulo.
+     * @param sequence A head or tail sequence.
+     * @return The corresponding index.
+     */
+    private int index(long sequence) {
+        return mask >= 0 ? (int)sequence & mask : (int)(sequence % capacity);
+    }
+
+    /**
+     * Get the length of the data contained in the MappedRingBuffer.
+     * @return The length of the data in bytes.
+     */
+    public int getLength() {
+        // read the tail first so that the result is never negative
+        long tail = acquire(TAIL_OFFSET);
+        return (int)Math.min(acquire(HEAD_OFFSET) - tail, capacity);
+    }
+
+    /**
+     * Get the maximum capacity of the MappedRingBuffer.
+     * @return The maximum capacity in bytes.
+     */
+    public int getMaxLength() {
+        return capacity;
+    }
+
+    /**
+     * Get the size of the unused space in the MappedRingBuffer.
+     * @return The unused capacity in bytes.
+     */
+    public int getFreeSpace() {
+        return capacity - getLength();
+    }
+
+    /**
+     * Get the tail pointer within the data region of the file.
+     * @return The tail pointer.
+     */
+    public int getTail() {
+        return index(acquire(TAIL_OFFSET));
+    }
+
+    @Override public String toString() {
+        StringBuilder sb = new StringBuilder("[");
+        for(int i = 0; i < capacity; i++) {
+            if(i > 0) {
+                sb.append(", ");
+            }
+            sb.append(mapped.get(HEADER_SIZE + i));
+        }
+        return sb.append("], ").append(getTail()).append(", ").append(getLength()).toString();
+    }
+}
@@ -0,0 +1,526 @@
+/*
+ * Multi-Producer/Single-Consumer Byte-Array Ring Buffer
+ */
+package com.awirtz.util;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A lock-free ring buffer implementation on top of a byte array which may be
+ * written by any number of producer threads and read by one consumer thread.
+ *
+ * Each write claims a contiguous region by advancing the head sequence with a
+ * compare-and-set, copies into that region in parallel with the other
+ * producers, and then commits it.  Regions are committed in the order they
+ * were claimed, so the consumer only ever sees fully copied data, or zeros
+ * in place of a region abandoned by a failed writer callback.  The read
+ * methods must only be called from the consumer thread; the remaining
+ * accessors may be called from any thread and return a momentary snapshot.
+ *
+ * The blocking writeFully and readFully methods wait for space or data
+ * using a {@link WaitStrategy}, which is {@link ParkingWaitStrategy} unless
+ * another is supplied at construction.
+ *
+ * @author Aaron Meriwether
+ */
+public class MpscRingBuffer {
+    private final byte[] byteArray;
+    private final int mask;
+    private final Sequence head = new Sequence(0);
+    private final Sequence committed = new Sequence(0);
+    private final Sequence tail = new Sequence(0);
+    private final WaitStrategy waitStrategy;
+    private volatile RingBufferMetrics metrics;
+    private final WaitCondition dataAvailable = new WaitCondition() {
+        @Override public boolean isSatisfied() {
+            return getLength() > 0;
+        }
+    };
+    private final WaitCondition spaceAvailable = new WaitCondition() {
+        @Override public boolean isSatisfied() {
+            return getFreeSpace() > 0;
+        }
+    };
+
+    /**
+     * Create a new MpscRingBuffer of the specified size.
+     * @param size The size in bytes of the MpscRingBuffer.
+     */
+    public MpscRingBuffer(int size) {
+        this(new byte[size]);
+    }
+
+    /**
+     * Create a new MpscRingBuffer of the specified size which uses the specified
+     * strategy for its blocking methods.
+     * @param size The size in bytes of the MpscRingBuffer.
+     * @param waitStrategy The strategy used to wait for data or space.
+     */
+    public MpscRingBuffer(int size, WaitStrategy waitStrategy) {
+        this(new byte[size], waitStrategy);
+    }
+
+    /**
+     * Turn an existing byte array into an MpscRingBuffer.
+     * @param buffer A byte array to be used as an MpscRingBuffer.
+     */
+    public MpscRingBuffer(byte[] buffer) {
+        this(buffer, new ParkingWaitStrategy());
+    }
+
+    /**
+     * Turn an existing byte array into an MpscRingBuffer which uses the specified
+     * strategy for its blocking methods.
+     * @param buffer A byte array to be used as an MpscRingBuffer.
+     * @param waitStrategy The strategy used to wait for data or space.
+     */
+    public MpscRingBuffer(byte[] buffer, WaitStrategy waitStrategy) {
+        byteArray = buffer;
+        this.waitStrategy = waitStrategy;
+        // power-of-two capacities index by masking
+        mask = Integer.bitCount(byteArray.length) == 1 ? byteArray.length - 1 : -1;
+    }
+
+    /**
+     * Write to the MpscRingBuffer from a byte array.
+     * If the write exceeds the free space in the MpscRingBuffer, only part of
+     * the data will be written.  The written bytes are always contiguous and
+     * are never interleaved with those of another producer.
+     *
+     * @param buffer A byte array from which the data will be copied.
+     * @param offset The offset in the byte array where the data begins.
+     * @param length The number of bytes to be written.
+     * @return The number of bytes successfully written to the MpscRingBuffer.
+     * This may be less than the requested length if there is insufficient free
+     * space in the MpscRingBuffer, or zero if the MpscRingBuffer is full.
+     * @throws IndexOutOfBoundsException If the source range is not within the
+     * byte array, in which case nothing is claimed.
+     */
+    public int write(byte[] buffer, int offset, int length) {
+        // a claimed region must always be committed, so check the source
+        // range before claiming rather than let the copy fail afterwards
+        if(offset < 0 || length < 0 || length > buffer.length - offset) {
+            throw new IndexOutOfBoundsException();
+        }
+        long head;
+        int toWrite;
+        do {
+            head = this.head.get();
+            // if the request exceeds the free space, claim as much as possible
+            toWrite = (int)Math.min(length, byteArray.length - (head - this.tail.get()));
+            if(toWrite <= 0) {
+                RingBufferMetrics metrics = this.metrics;
+                if(metrics != null && length > 0) {
+                    metrics.recordWrite(0, true, false, byteArray.length);
+                }
+                return 0;
+            }
+        } while(!this.head.compareAndSet(head, head + toWrite));
+        int index = index(head);
+        int toEnd = byteArray.length - index;
+        if(toWrite > toEnd) {
+            // write from the head to the end
+            System.arraycopy(buffer, offset, byteArray, index, toEnd);
+            // write the remainder from the beginning
+            System.arraycopy(buffer, offset + toEnd, byteArray, 0, toWrite - toEnd);
+        } else {
+            // write the whole thing at once
+            System.arraycopy(buffer, offset, byteArray, index, toWrite);
+        }
+        commit(head, toWrite);
+        RingBufferMetrics metrics = this.metrics;
+        if(metrics != null) {
+            metrics.recordWrite(toWrite, toWrite < length, toWrite > toEnd, head + toWrite - this.tail.get());
+        }
+        return toWrite;
+    }
+
+    /**
+     * Perform a write operation via callbacks on a supplied object.
+     * This is the concurrent equivalent of
+     * {@link RingBuffer#writer(RingBufferWriter, int)}; the claimed region is
+     * not visible to the consumer until the callbacks have returned.
+     *
+     * If a callback throws, the claimed region cannot be given back, since
+     * other producers may already have claimed the space after it, and the
+     * unframed byte stream has no way to mark it for skipping.  It is
+     * therefore filled with zeros and committed, so the consumer sees that
+     * many zero bytes rather than stale data; producers whose records must
+     * not be corrupted should frame them and never throw from the writer.
+     *
+     * @param writer An object implementing the RingBufferWriter interface.
+     * @param length The number of bytes to be written.
+     * @return The number of bytes successfully written to the MpscRingBuffer.
+     * This may be less than the requested length if there is insufficient free
+     * space in the MpscRingBuffer, or zero if the MpscRingBuffer is full.
+     */
+    public int writer(RingBufferWriter writer, int length) {
+        long head;
+        int toWrite;
+        do {
+            head = this.head.get();
+            // if the request exceeds the free space, claim as much as possible
+            toWrite = (int)Math.min(length, byteArray.length - (head - this.tail.get()));
+            if(toWrite <= 0) {
+                RingBufferMetrics metrics = this.metrics;
+                if(metrics != null && length > 0) {
+                    metrics.recordWrite(0, true, false, byteArray.length);
+                }
+                return 0;
+            }
+        } while(!this.head.compareAndSet(head, head + toWrite));
+        int index = index(head);
+        int toEnd = byteArray.length - index;
+        boolean written = false;
+        try {
+            if(toWrite > toEnd) {
+                // write from the head to the end
+                writer.write(byteArray, index, toEnd);
+                // write the remainder from the beginning
+                writer.write(byteArray, 0, toWrite - toEnd);
+            } else {
+                // write the whole thing at once
+                writer.write(byteArray, index, toWrite);
+            }
+            written = true;
+        } finally {
+            if(!written) {
+                // blank the abandoned region so that no stale data is exposed
+                if(toWrite > toEnd) {
+                    Arrays.fill(byteArray, index, byteArray.length, (byte)0);
+                    Arrays.fill(byteArray, 0, toWrite - toEnd, (byte)0);
+                } else {
+                    Arrays.fill(byteArray, index, index + toWrite, (byte)0);
+                }
+            }
+            // the region must be committed regardless, or later producers
+            // would wait on it forever
+            commit(head, toWrite);
+        }
+        RingBufferMetrics metrics = this.metrics;
+        if(metrics != null) {
+            metrics.recordWrite(toWrite, toWrite < length, toWrite > toEnd, head + toWrite - this.tail.get());
+        }
+        return toWrite;
+    }
+
+    /**
+     * Read from the MpscRingBuffer into a byte array.
+     * This must only be called by the consumer.
+     *
+     * @param buffer A byte array in which the read data will be placed.
+     * @param offset The offset in the byte array where the read data should be placed.
+     * @param length The number of bytes to be read.
+     * @return The number of bytes successfully read from the MpscRingBuffer.
+     * This may be less than the requested length if there were fewer
+     * committed bytes in the buffer, or zero if the buffer was empty.
+     */
+    public int read(byte[] buffer, int offset, int length) {
+        long tail = this.tail.get();
+        int toRead = available(tail, length);
+        int index = index(tail);
+        int toEnd = byteArray.length - index;
+        if(toRead > toEnd) {
+            // read from the tail to the end
+            System.arraycopy(byteArray, index, buffer, offset, toEnd);
+            // read the requested remainder from the beginning
+            System.arraycopy(byteArray, 0, buffer, offset + toEnd, toRead - toEnd);
+        } else {
+            // read the whole requested thing at once
+            System.arraycopy(byteArray, index, buffer, offset, toRead);
+        }
+        // release the read space back to the producers
+        if(toRead > 0) {
+            this.tail.lazySet(tail + toRead);
+            waitStrategy.signal();
+        }
+        RingBufferMetrics metrics = this.metrics;
+        if(metrics != null) {
+            metrics.recordRead(toRead, toRead == 0 && length > 0, toRead > toEnd);
+        }
+        return toRead;
+    }
+
+    /**
+     * Perform a read operation via callbacks on a supplied object.
+     * This is the concurrent equivalent of
+     * {@link RingBuffer#reader(RingBufferReader, int)}; the read space is not
+     * released to the producers until the callbacks have returned.  This must
+     * only be called by the consumer.
+     *
+     * @param reader An object implementing the RingBufferReader interface.
+     * @param length The number of bytes to be read.
+     * @return The number of bytes successfully read from the MpscRingBuffer.
+     * This may be less than the requested length if there were fewer
+     * committed bytes in the buffer, or zero if the buffer was empty.
+     */
+    public int reader(RingBufferReader reader, int length) {
+        long tail = this.tail.get();
+        int toRead = available(tail, length);
+        int index = index(tail);
+        int toEnd = byteArray.length - index;
+        if(toRead > toEnd) {
+            // read from the tail to the end
+            reader.read(byteArray, index, toEnd);
+            // read the requested remainder from the beginning
+            reader.read(byteArray, 0, toRead - toEnd);
+        } else {
+            // read the whole requested thing at once
+            reader.read(byteArray, index, toRead);
+        }
+        // release the read space back to the producers
+        if(toRead > 0) {
+            this.tail.lazySet(tail + toRead);
+            waitStrategy.signal();
+        }
+        RingBufferMetrics metrics = this.metrics;
+        if(metrics != null) {
+            metrics.recordRead(toRead, toRead == 0 && length > 0, toRead > toEnd);
+        }
+        return toRead;
+    }
+
+    /**
+     * Deliver all of the data committed in the MpscRingBuffer, up to a
+     * limit, to a reader in a single batch.
+     * The published head is read exactly once, the reader is invoked zero,
+     * one, or two times, and the tail is advanced once.  If the reader is a
+     * {@link RingBufferBatchReader} and the batch was not empty, its
+     * end-of-batch hook is invoked once after the space has been released
+     * back to the producers.  This must only be called by the consumer.
+     *
+     * @param reader An object implementing the RingBufferReader interface.
+     * @param maxBytes The maximum number of bytes to be delivered.
+     * @return The number of bytes delivered, or zero if the buffer was empty.
+     */
+    public int drainTo(RingBufferReader reader, int maxBytes) {
+        long tail = this.tail.get();
+        // take a single snapshot of everything published so far
+        this.tail.cached = committed.get();
+        int toRead = (int)Math.min(maxBytes, this.tail.cached - tail);
+        int index = index(tail);
+        int toEnd = byteArray.length - index;
+        if(toRead > toEnd) {
+            // read from the tail to the end
+            reader.read(byteArray, index, toEnd);
+            // read the requested remainder from the beginning
+            reader.read(byteArray, 0, toRead - toEnd);
+        } else {
+            // read the whole requested thing at once
+            reader.read(byteArray, index, toRead);
+        }
+        if(toRead > 0) {
+            // release the read space back to the producers
+            this.tail.lazySet(tail + toRead);
+            waitStrategy.signal();
+            if(reader instanceof RingBufferBatchReader) {
+                ((RingBufferBatchReader)reader).endOfBatch(toRead);
+            }
+        }
+        RingBufferMetrics metrics = this.metrics;
+        if(metrics != null) {
+            metrics.recordRead(toRead, toRead == 0 && maxBytes > 0, toRead > toEnd);
+        }
+        return toRead;
+    }
+
+    /**
+     * Write the whole of a byte array region to the MpscRingBuffer, waiting for
+     * free space as necessary.
+     * Other producers' writes may be interleaved between the chunks in
+     * which the region is written.
+     *
+     * @param buffer A byte array from which the data will be copied.
+     * @param offset The offset in the byte array where the data begins.
+     * @param length The number of bytes to be written.
+     * @throws InterruptedException If the thread is interrupted while waiting.
+     */
+    public void writeFully(byte[] buffer, int offset, int length)
+            throws InterruptedException {
+        writeFully(buffer, offset, length, Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Write the whole of a byte array region to the MpscRingBuffer, waiting for
+     * free space as necessary until the timeout elapses.
+     * Other producers' writes may be interleaved between the chunks in
+     * which the region is written.
+     *
+     * @param buffer A byte array from which the data will be copied.
+     * @param offset The offset in the byte array where the data begins.
+     * @param length The number of bytes to be written.
+     * @param timeout The maximum time to wait.
+     * @param unit The unit of the timeout.
+     * @return The number of bytes written, which is less than the requested
+     * length only if the timeout elapsed.
+     * @throws InterruptedException If the thread is interrupted while waiting.
+     */
+    public int writeFully(byte[] buffer, int offset, int length, long timeout, TimeUnit unit)
+            throws InterruptedException {
+        long nanos = unit.toNanos(timeout);
+        long start = System.nanoTime();
+        int written = write(buffer, offset, length);
+        while(written < length) {
+            long remaining = nanos - (System.nanoTime() - start);
+            if(remaining <= 0 || !waitStrategy.await(spaceAvailable, remaining)) {
+                break;
+            }
+            written += write(buffer, offset + written, length - written);
+        }
+        return written;
+    }
+
+    /**
+     * Fill the whole of a byte array region from the MpscRingBuffer, waiting for
+     * data as necessary.  This must only be called by the consumer.
+     *
+     * @param buffer A byte array in which the read data will be placed.
+     * @param offset The offset in the byte array where the read data should be placed.
+     * @param length The number of bytes to be read.
+     * @throws InterruptedException If the thread is interrupted while waiting.
+     */
+    public void readFully(byte[] buffer, int offset, int length)
+            throws InterruptedException {
+        readFully(buffer, offset, length, Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Fill the whole of a byte array region from the MpscRingBuffer, waiting for
+     * data as necessary until the timeout elapses.  This must only be called
+     * by the consumer.
+     *
+     * @param buffer A byte array in which the read data will be placed.
+     * @param offset The offset in the byte array where the read data should be placed.
+     * @param length The number of bytes to be read.
+     * @param timeout The maximum time to wait.
+     * @param unit The unit of the timeout.
+     * @return The number of bytes read, which is less than the requested
+     * length only if the timeout elapsed.
+     * @throws InterruptedException If the thread is interrupted while waiting.
+     */
+    public int readFully(byte[] buffer, int offset, int length, long timeout, TimeUnit unit)
+            throws InterruptedException {
+        long nanos = unit.toNanos(timeout);
+        long start = System.nanoTime();
+        int read = read(buffer, offset, length);
+        while(read < length) {
+            long remaining = nanos - (System.nanoTime() - start);
+            if(remaining <= 0 || !waitStrategy.await(dataAvailable, remaining)) {
+                break;
+            }
+            read += read(buffer, offset + read, length - read);
+        }
+        return read;
+    }
+
+    /**
+     * Commit a claimed region once all regions claimed before it have been
+     * committed, making it visible to the consumer.
+     * @param head The start sequence of the region.
+     * @param length The length of the region.
+     */
+    private void commit(long head, int length) {
+        // regions are committed in claim order
+        while(committed.get() != head) {
+            Thread.yield();
+        }
+        committed.lazySet(head + length);
+        waitStrategy.signal();
+    }
+
+    /**
+     * Work out how much of a read request can be satisfied, consulting the
+     * committed sequence only when the cached copy is insufficient.
+     * @param tail The consumer's current tail sequence.
+     * @param length The number of bytes requested.
+     * @return The number of bytes which may be read.
+     */
+    private int available(long tail, int length) {
+        long used = this.tail.cached - tail;
+        if(used < length) {
+            this.tail.cached = committed.get();
+            used = this.tail.cached - tail;
+        }
+        return (int)Math.min(length, used);
+    }
+
+    /**
+     * Map a free-running sequence onto an index in the byte array.  When the
+     * capacity is a power of two this is a mask; otherwise it falls back to a
+     * modulo.
+     * @param sequence A head or tail sequence.
+     * @return The corresponding index.
+     */
+    private int index(long sequence) {
+        return mask >= 0 ? (int)sequence & mask : (int)(sequence % byteArray.length);
+    }
+
+    /**
+     * Attach metrics to the MpscRingBuffer, or detach them.
+     * While attached, every transfer is recorded in the metrics; while
+     * detached, the only cost is a null check.  This may be called from any
+     * thread.
+     * @param metrics The metrics to be updated, or null for none.
+     */
+    public void setMetrics(RingBufferMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Get the metrics attached to the MpscRingBuffer.
+     * @return The attached metrics, or null if there are none.
+     */
+    public RingBufferMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Get the length of the committed data contained in the MpscRingBuffer.
+     * @return The length of the data in bytes.
+     */
+    public int getLength() {
+        // read the tail first so that the result is never negative
+        long tail = this.tail.get();
+        return (int)Math.min(committed.get() - tail, byteArray.length);
+    }
+
+    /**
+     * Get the maximum capacity of the MpscRingBuffer.
+     * @return The maximum capacity in bytes.
+     */
+    public int getMaxLength() {
+        return byteArray.length;
+    }
+
+    /**
+     * Get the size of the unused space in the MpscRingBuffer.
+     * Regions which have been claimed by a producer but not yet committed are
+     * counted as neither data nor free space.
+     * @return The unused capacity in bytes.
+     */
+    public int getFreeSpace() {
+        long tail = this.tail.get();
+        return (int)Math.max(byteArray.length - (head.get() - tail), 0);
+    }
+
+    /**
+     * Get the underlying byte array.
+     * @return The underlying byte array.
+     */
+    public byte[] getByteArray() {
+        return byteArray;
+    }
+
+    /**
+     * Get the tail pointer for the underlying byte array.
+     * @return The tail pointer.
+     */
+    public int getTail() {
+        return index(tail.get());
+    }
+
+    @Override public String toString() {
+        return Arrays.toString(byteArray) + ", " + getTail() + ", " + getLength();
+    }
+}
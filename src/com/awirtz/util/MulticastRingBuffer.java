@@ -0,0 +1,425 @@
+/*
+ * Multicast Byte-Array Ring Buffer
+ */
+package com.awirtz.util;
+
+import java.util.Arrays;
+
+/**
+ * A lock-free ring buffer implementation on top of a byte array which is
+ * written once by a single producer thread and read independently by any
+ * number of consumers.
+ *
+ * Each consumer registers with {@link #addReader()} and receives a
+ * {@link Cursor}, which tracks its own position in the stream; every consumer
+ * sees every byte written after it registered.  A cursor must only be used by
+ * one thread at a time, and the write methods must only be called from the
+ * producer thread.
+ *
+ * By default the producer is held back by the slowest registered consumer,
+ * so nothing is lost.  In overrun mode the producer never waits: a consumer
+ * which falls more than a buffer's length behind skips ahead to the oldest
+ * data still available, and the skipped bytes are added to its cursor's
+ * {@link Cursor#getDropped() dropped} count.
+ *
+ * @author Aaron Meriwether
+ */
+public class MulticastRingBuffer {
+    private final byte[] byteArray;
+    private final int mask;
+    private final boolean overrun;
+    private final Sequence head = new Sequence(0);
+    private final Sequence claimed = new Sequence(0);
+    private volatile Cursor[] cursors = new Cursor[0];
+
+    /**
+     * Create a new MulticastRingBuffer of the specified size in which the
+     * producer is held back by the slowest consumer.
+     * @param size The size in bytes of the MulticastRingBuffer.
+     */
+    public MulticastRingBuffer(int size) {
+        this(new byte[size], false);
+    }
+
+    /**
+     * Create a new MulticastRingBuffer of the specified size.
+     * @param size The size in bytes of the MulticastRingBuffer.
+     * @param overrun True if slow consumers should be overrun rather than
+     * holding back the producer.
+     */
+    public MulticastRingBuffer(int size, boolean overrun) {
+        this(new byte[size], overrun);
+    }
+
+    /**
+     * Turn an existing byte array into a MulticastRingBuffer.
+     * @param buffer A byte array to be used as a MulticastRingBuffer.
+     * @param overrun True if slow consumers should be overrun rather than
+     * holding back the producer.
+     */
+    public MulticastRingBuffer(byte[] buffer, boolean overrun) {
+        byteArray = buffer;
+        this.overrun = overrun;
+        // power-of-two capacities index by masking
+        mask = Integer.bitCount(byteArray.length) == 1 ? byteArray.length - 1 : -1;
+    }
+
+    /**
+     * Register a new consumer.  The consumer will see everything written
+     * from this point on.
+     * @return The consumer's cursor.
+     */
+    public synchronized Cursor addReader() {
+        Cursor cursor = new Cursor(head.get());
+        Cursor[] grown = Arrays.copyOf(cursors, cursors.length + 1);
+        grown[cursors.length] = cursor;
+        cursors = grown;
+        // a producer which scanned the cursors before they were published may
+        // already be overwriting data behind the head read above, so start
+        // from the head as it stands now that the cursor is visible; see
+        // claim for the other half of this handshake
+        cursor.sequence.set(head.get());
+        return cursor;
+    }
+
+    /**
+     * Unregister a consumer, so that it no longer holds back the producer.
+     * @param cursor The consumer's cursor.
+     * @return True if the cursor was registered.
+     */
+    public synchronized boolean removeReader(Cursor cursor) {
+        for(int i = 0; i < cursors.length; i++) {
+            if(cursors[i] == cursor) {
+                Cursor[] shrunk = new Cursor[cursors.length - 1];
+                System.arraycopy(cursors, 0, shrunk, 0, i);
+                System.arraycopy(cursors, i + 1, shrunk, i, shrunk.length - i);
+                cursors = shrunk;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Write to the MulticastRingBuffer from a byte array.
+     * Unless in overrun mode, if the write exceeds the space released by the
+     * slowest consumer, only part of the data will be written.  This must
+     * only be called by the producer.
+     *
+     * @param buffer A byte array from which the data will be copied.
+     * @param offset The offset in the byte array where the data begins.
+     * @param length The number of bytes to be written.
+     * @return The number of bytes successfully written to the
+     * MulticastRingBuffer.  This may be less than the requested length if
+     * there is insufficient free space, or if the request exceeds the size of
+     * the MulticastRingBuffer in overrun mode.
+     */
+    public int write(byte[] buffer, int offset, int length) {
+        long head = this.head.get();
+        int toWrite = claim(head, length);
+        int index = index(head);
+        int toEnd = byteArray.length - index;
+        if(toWrite > toEnd) {
+            // write from the head to the end
+            System.arraycopy(buffer, offset, byteArray, index, toEnd);
+            // write the remainder from the beginning
+            System.arraycopy(buffer, offset + toEnd, byteArray, 0, toWrite - toEnd);
+        } else {
+            // write the whole thing at once
+            System.arraycopy(buffer, offset, byteArray, index, toWrite);
+        }
+        // publish the written bytes to the consumers
+        if(toWrite > 0) {
+            this.head.lazySet(head + toWrite);
+        }
+        return toWrite;
+    }
+
+    /**
+     * Perform a write operation via callbacks on a supplied object.
+     * This is the multicast equivalent of
+     * {@link RingBuffer#writer(RingBufferWriter, int)}; the written bytes are
+     * not visible to the consumers until the callbacks have returned.  This
+     * must only be called by the producer.
+     *
+     * @param writer An object implementing the RingBufferWriter interface.
+     * @param length The number of bytes to be written.
+     * @return The number of bytes successfully written to the
+     * MulticastRingBuffer.
+     * @see #write(byte[], int, int)
+     */
+    public int writer(RingBufferWriter writer, int length) {
+        long head = this.head.get();
+        int toWrite = claim(head, length);
+        int index = index(head);
+        int toEnd = byteArray.length - index;
+        if(toWrite > toEnd) {
+            // write from the head to the end
+            writer.write(byteArray, index, toEnd);
+            // write the remainder from the beginning
+            writer.write(byteArray, 0, toWrite - toEnd);
+        } else {
+            // write the whole thing at once
+            writer.write(byteArray, index, toWrite);
+        }
+        // publish the written bytes to the consumers
+        if(toWrite > 0) {
+            this.head.lazySet(head + toWrite);
+        }
+        return toWrite;
+    }
+
+    /**
+     * Read from the MulticastRingBuffer into a byte array.
+     * In overrun mode, any data the consumer has fallen too far behind to
+     * read is skipped and counted as dropped.  This must only be called by
+     * the cursor's consumer.
+     *
+     * @param cursor The consumer's cursor.
+     * @param buffer A byte array in which the read data will be placed.
+     * @param offset The offset in the byte array where the read data should be placed.
+     * @param length The number of bytes to be read.
+     * @return The number of bytes successfully read from the
+     * MulticastRingBuffer.  This may be less than the requested length if
+     * there were fewer unread bytes in the buffer, or zero if there were none.
+     */
+    public int read(Cursor cursor, byte[] buffer, int offset, int length) {
+        long tail;
+        int toRead;
+        do {
+            tail = skip(cursor, cursor.sequence.get());
+            toRead = (int)Math.min(length, this.head.get() - tail);
+            int index = index(tail);
+            int toEnd = byteArray.length - index;
+            if(toRead > toEnd) {
+                // read from the tail to the end
+                System.arraycopy(byteArray, index, buffer, offset, toEnd);
+                // read the requested remainder from the beginning
+                System.arraycopy(byteArray, 0, buffer, offset + toEnd, toRead - toEnd);
+            } else {
+                // read the whole requested thing at once
+                System.arraycopy(byteArray, index, buffer, offset, toRead);
+            }
+            // in overrun mode, try again if the producer overwrote the copy
+        } while(!release(cursor, tail, toRead));
+        return toRead;
+    }
+
+    /**
+     * Perform a read operation via callbacks on a supplied object.
+     * The reader is given the shared byte array itself, so every consumer
+     * reads the same bytes without copying; it is invoked zero, one, or two
+     * times as in {@link RingBuffer#reader(RingBufferReader, int)}.  This must
+     * only be called by the cursor's consumer.
+     *
+     * In overrun mode, the producer may overwrite the bytes while the reader
+     * is examining them.  If so, the read is abandoned after the callbacks
+     * have returned: the bytes are counted as dropped and -1 is returned, and
+     * the reader must discard whatever it was given.
+     *
+     * @param cursor The consumer's cursor.
+     * @param reader An object implementing the RingBufferReader interface.
+     * @param length The number of bytes to be read.
+     * @return The number of bytes successfully read from the
+     * MulticastRingBuffer, or -1 if they were overwritten during the read.
+     */
+    public int reader(Cursor cursor, RingBufferReader reader, int length) {
+        long tail = skip(cursor, cursor.sequence.get());
+        int toRead = (int)Math.min(length, this.head.get() - tail);
+        int index = index(tail);
+        int toEnd = byteArray.length - index;
+        if(toRead > toEnd) {
+            // read from the tail to the end
+            reader.read(byteArray, index, toEnd);
+            // read the requested remainder from the beginning
+            reader.read(byteArray, 0, toRead - toEnd);
+        } else {
+            // read the whole requested thing at once
+            reader.read(byteArray, index, toRead);
+        }
+        return release(cursor, tail, toRead) ? toRead : -1;
+    }
+
+    /**
+     * Work out how much of a write request may proceed.  Unless in overrun
+     * mode, the consumers' cursors are only consulted when the cached
+     * position of the slowest is insufficient.  In overrun mode the region is
+     * announced before it is overwritten, so that consumers can detect it.
+     * @param head The producer's current head sequence.
+     * @param length The number of bytes requested.
+     * @return The number of bytes which may be written.
+     */
+    private int claim(long head, int length) {
+        if(overrun) {
+            int toWrite = Math.min(length, byteArray.length);
+            if(toWrite > 0) {
+                claimed.set(head + toWrite);
+                // the volatile read keeps the copy from moving above the claim
+                claimed.get();
+            }
+            return toWrite;
+        }
+        long free = byteArray.length - (head - this.head.cached);
+        if(free < length) {
+            // a full volatile store of the head before reading the cursors
+            // means that a consumer registering concurrently either is seen
+            // here or starts at or after this head
+            this.head.set(head);
+            long slowest = head;
+            for(Cursor cursor : cursors) {
+                slowest = Math.min(slowest, cursor.sequence.get());
+            }
+            this.head.cached = slowest;
+            free = byteArray.length - (head - slowest);
+        }
+        return (int)Math.max(Math.min(length, free), 0);
+    }
+
+    /**
+     * In overrun mode, move a cursor which has been lapped by the producer
+     * up to the oldest data still available.
+     * @param cursor The consumer's cursor.
+     * @param tail The consumer's current tail sequence.
+     * @return The tail sequence from which to read.
+     */
+    private long skip(Cursor cursor, long tail) {
+        if(overrun) {
+            long oldest = this.claimed.get() - byteArray.length;
+            if(oldest > tail) {
+                cursor.dropped += oldest - tail;
+                return oldest;
+            }
+        }
+        return tail;
+    }
+
+    /**
+     * Advance a cursor past the bytes just read.  In overrun mode, first
+     * check that the producer did not overwrite them during the read; if it
+     * did, they are counted as dropped instead.
+     * @param cursor The consumer's cursor.
+     * @param tail The tail sequence at which the read began.
+     * @param length The number of bytes read.
+     * @return True if the read is valid.
+     */
+    private boolean release(Cursor cursor, long tail, int length) {
+        if(!overrun) {
+            // release the read space back to the producer
+            if(length > 0) {
+                cursor.sequence.lazySet(tail + length);
+            }
+            return true;
+        }
+        // the volatile write keeps the copy from moving below the check
+        cursor.sequence.set(tail + length);
+        long oldest = this.claimed.get() - byteArray.length;
+        if(oldest <= tail) {
+            return true;
+        }
+        // the producer lapped the read; skip everything it has overwritten
+        long next = Math.max(oldest, tail + length);
+        cursor.dropped += next - tail;
+        cursor.sequence.set(next);
+        return false;
+    }
+
+    /**
+     * Map a free-running sequence onto an index in the byte array.  When the
+     * capacity is a power of two this is a mask; otherwise it falls back to a
+     * modulo.
+     * @param sequence A head or cursor sequence.
+     * @return The corresponding index.
+     */
+    private int index(long sequence) {
+        return mask >= 0 ? (int)sequence & mask : (int)(sequence % byteArray.length);
+    }
+
+    /**
+     * Get the length of the data not yet read by a consumer.
+     * @param cursor The consumer's cursor.
+     * @return The length of the unread data in bytes, which in overrun mode
+     * is limited to the size of the MulticastRingBuffer.
+     */
+    public int getLength(Cursor cursor) {
+        // read the cursor first so that the result is never negative
+        long tail = cursor.sequence.get();
+        return (int)Math.min(head.get() - tail, byteArray.length);
+    }
+
+    /**
+     * Get the maximum capacity of the MulticastRingBuffer.
+     * @return The maximum capacity in bytes.
+     */
+    public int getMaxLength() {
+        return byteArray.length;
+    }
+
+    /**
+     * Get the size of the space which the producer may currently write
+     * without waiting for a consumer.
+     * @return The free space in bytes, which is always the full capacity in
+     * overrun mode.
+     */
+    public int getFreeSpace() {
+        long head = this.head.get();
+        if(overrun) {
+            return byteArray.length;
+        }
+        long slowest = head;
+        for(Cursor cursor : cursors) {
+            slowest = Math.min(slowest, cursor.sequence.get());
+        }
+        return (int)Math.max(byteArray.length - (head - slowest), 0);
+    }
+
+    /**
+     * Test whether slow consumers are overrun rather than holding back the
+     * producer.
+     * @return True if in overrun mode.
+     */
+    public boolean isOverrun() {
+        return overrun;
+    }
+
+    /**
+     * Get the number of registered consumers.
+     * @return The number of cursors.
+     */
+    public int getReaderCount() {
+        return cursors.length;
+    }
+
+    /**
+     * Get the underlying byte array.
+     * @return The underlying byte array.
+     */
+    public byte[] getByteArray() {
+        return byteArray;
+    }
+
+    @Override public String toString() {
+        return Arrays.toString(byteArray) + ", " + index(head.get()) + ", " + cursors.length;
+    }
+
+    /**
+     * The position of one consumer in a MulticastRingBuffer.
+     */
+    public static final class Cursor {
+        private final Sequence sequence;
+        private volatile long dropped;
+
+        private Cursor(long sequence) {
+            this.sequence = new Sequence(sequence);
+        }
+
+        /**
+         * Get the number of bytes this consumer has missed because the
+         * producer overran it.
+         * @return The number of dropped bytes, which is always zero unless
+         * in overrun mode.
+         */
+        public long getDropped() {
+            return dropped;
+        }
+    }
+}
@@ -0,0 +1,146 @@
+/*
+ * Overwriting Byte-Array Ring Buffer
+ */
+package com.awirtz.util;
+
+/**
+ * A {@link RingBuffer} which keeps only the most recent data.
+ * A write which does not fit makes room by discarding the oldest data instead
+ * of being cut short, so writes always succeed and the buffer holds the last
+ * {@link #getMaxLength()} bytes written.  This suits flight-recorder style
+ * tracing, where the contents are only occasionally dumped with
+ * {@link #snapshot()}.
+ *
+ * Bytes are discarded with no regard for any record structure; use a
+ * {@link FramedRingBuffer} in overwrite mode to drop whole records instead.
+ * Reads from a channel are not speculative, so they only fill the free space
+ * as in a plain RingBuffer.
+ *
+ * @author Aaron Meriwether
+ */
+public class OverwritingRingBuffer extends RingBuffer {
+    private long overwritten = 0;
+
+    /**
+     * Create a new OverwritingRingBuffer of the specified size.
+     * @param size The size in bytes of the OverwritingRingBuffer.
+     */
+    public OverwritingRingBuffer(int size) {
+        super(size);
+    }
+
+    /**
+     * Create a new OverwritingRingBuffer on top of an existing byte array.
+     * @param buffer The byte array to use.
+     */
+    public OverwritingRingBuffer(byte[] buffer) {
+        super(buffer);
+    }
+
+    /**
+     * Write to the OverwritingRingBuffer from a byte array, discarding the
+     * oldest data as necessary.  If the data is longer than the capacity,
+     * only its last bytes are kept.
+     * @return The number of bytes written, which is the requested length.
+     * @see RingBuffer#write(byte[], int, int)
+     */
+    @Override public int write(byte[] buffer, int offset, int length) {
+        int capacity = getMaxLength();
+        if(length > capacity) {
+            // everything already held, and the start of the data, would be
+            // overwritten anyway
+            overwritten += getLength() + (length - capacity);
+            discard(getLength());
+            super.write(buffer, offset + length - capacity, capacity);
+            return length;
+        }
+        makeRoom(length);
+        return super.write(buffer, offset, length);
+    }
+
+    /**
+     * Perform a write operation via callbacks on a supplied object, discarding
+     * the oldest data as necessary.  The writer can be given no more than the
+     * capacity, so a longer write is cut short.
+     * @see RingBuffer#writer(RingBufferWriter, int)
+     */
+    @Override public int writer(RingBufferWriter writer, int length) {
+        makeRoom(Math.min(length, getMaxLength()));
+        return super.writer(writer, length);
+    }
+
+    /**
+     * Write a single byte to the OverwritingRingBuffer, discarding the oldest
+     * byte if it is full.
+     * @return True unless the capacity is zero.
+     * @see RingBuffer#put(byte)
+     */
+    @Override public boolean put(byte b) {
+        makeRoom(1);
+        return super.put(b);
+    }
+
+    /**
+     * Write a small record to the OverwritingRingBuffer in its entirety,
+     * discarding the oldest data as necessary.
+     * @return True unless the record is longer than the capacity.
+     * @see RingBuffer#put(byte[], int, int)
+     */
+    @Override public boolean put(byte[] buffer, int offset, int length) {
+        if(length <= getMaxLength()) {
+            makeRoom(length);
+        }
+        return super.put(buffer, offset, length);
+    }
+
+    /**
+     * Write a short to the OverwritingRingBuffer, discarding the oldest data
+     * as necessary.
+     * @see RingBuffer#putShort(short)
+     */
+    @Override public boolean putShort(short value) {
+        makeRoom(2);
+        return super.putShort(value);
+    }
+
+    /**
+     * Write an int to the OverwritingRingBuffer, discarding the oldest data
+     * as necessary.
+     * @see RingBuffer#putInt(int)
+     */
+    @Override public boolean putInt(int value) {
+        makeRoom(4);
+        return super.putInt(value);
+    }
+
+    /**
+     * Write a long to the OverwritingRingBuffer, discarding the oldest data
+     * as necessary.
+     * @see RingBuffer#putLong(long)
+     */
+    @Override public boolean putLong(long value) {
+        makeRoom(8);
+        return super.putLong(value);
+    }
+
+    /**
+     * Discard the oldest data so that a write of the specified length, which
+     * must not exceed the capacity, will fit.
+     * @param length The number of bytes about to be written.
+     */
+    private void makeRoom(int length) {
+        int excess = length - getFreeSpace();
+        if(excess > 0) {
+            overwritten += discard(excess);
+        }
+    }
+
+    /**
+     * Get the number of bytes which have been discarded to make room for
+     * newer data.
+     * @return The number of bytes overwritten.
+     */
+    public long getOverwritten() {
+        return overwritten;
+    }
+}
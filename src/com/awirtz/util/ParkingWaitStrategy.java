@@ -0,0 +1,77 @@
+/*
+ * Parking Wait Strategy
+ */
+package com.awirtz.util;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A {@link WaitStrategy} which parks waiting threads and unparks them when
+ * signalled.  Signalling costs a single volatile read when nobody is waiting,
+ * so this suits the lock-free ring buffers well.
+ * 
+ * Because the ring buffers publish their sequences without a full fence, a
+ * waiter may occasionally miss a signal which races with it going to sleep;
+ * waiters therefore never park for longer than a bounded interval before
+ * re-checking their condition.
+ * 
+ * @author Aaron Meriwether
+ */
+public class ParkingWaitStrategy implements WaitStrategy {
+    private final Queue<Thread> waiters = new ConcurrentLinkedQueue<Thread>();
+    private final long maxParkNanos;
+
+    /**
+     * Create a new ParkingWaitStrategy which re-checks at least once a
+     * millisecond.
+     */
+    public ParkingWaitStrategy() {
+        this(1, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Create a new ParkingWaitStrategy with the specified re-check interval.
+     * @param maxPark The longest time a thread will stay parked without being
+     * signalled.
+     * @param unit The unit of maxPark.
+     */
+    public ParkingWaitStrategy(long maxPark, TimeUnit unit) {
+        maxParkNanos = unit.toNanos(maxPark);
+    }
+
+    @Override public boolean await(WaitCondition condition, long nanos)
+            throws InterruptedException {
+        if(condition.isSatisfied()) {
+            return true;
+        }
+        long start = System.nanoTime();
+        Thread thread = Thread.currentThread();
+        waiters.add(thread);
+        try {
+            while(!condition.isSatisfied()) {
+                long remaining = nanos - (System.nanoTime() - start);
+                if(remaining <= 0) {
+                    return false;
+                }
+                LockSupport.parkNanos(this, Math.min(remaining, maxParkNanos));
+                if(Thread.interrupted()) {
+                    throw new InterruptedException();
+                }
+            }
+            return true;
+        } finally {
+            waiters.remove(thread);
+        }
+    }
+
+    @Override public void signal() {
+        if(!waiters.isEmpty()) {
+            for(Thread thread : waiters) {
+                LockSupport.unpark(thread);
+            }
+        }
+    }
+}
@@ -0,0 +1,47 @@
+/*
+ * Pooled Byte-Array Ring Buffer
+ */
+package com.awirtz.util;
+
+/**
+ * A {@link RingBuffer} on a region of a slab belonging to a
+ * {@link RingBufferPool}.
+ * It behaves exactly like any other RingBuffer until it is released, after
+ * which it must no longer be used.
+ *
+ * @author Aaron Meriwether
+ */
+public class PooledRingBuffer extends RingBuffer {
+    private final RingBufferPool pool;
+    // cleared atomically on release, so that only one release succeeds
+    volatile RingBufferPool.Lease lease;
+
+    /**
+     * Create a new PooledRingBuffer on a region of a slab.
+     * @param pool The pool to which the buffer belongs.
+     * @param slab The slab containing the region.
+     * @param offset The index in the slab at which the region begins.
+     * @param size The size in bytes of the region.
+     */
+    PooledRingBuffer(RingBufferPool pool, byte[] slab, int offset, int size) {
+        super(slab, offset, size, offset, 0);
+        this.pool = pool;
+    }
+
+    /**
+     * Return the PooledRingBuffer to its pool, discarding its contents and
+     * detaching any metrics.
+     * @throws IllegalStateException If it has already been released.
+     */
+    public void release() {
+        pool.release(this);
+    }
+
+    /**
+     * Get the pool to which the PooledRingBuffer belongs.
+     * @return The pool.
+     */
+    public RingBufferPool getPool() {
+        return pool;
+    }
+}
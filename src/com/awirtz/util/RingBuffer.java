@@ -3,6 +3,12 @@
  */
 package com.awirtz.util;
 
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.channels.ScatteringByteChannel;
 import java.util.Arrays;
 
 /**
@@ -11,8 +17,13 @@ import java.util.Arrays;
  */
 public class RingBuffer {
     private byte[] byteArray;
+    private int start = 0;
+    private int end;
     private int tail = 0;
     private int length = 0;
+    private ByteBuffer[] channelViews;
+    private RingBufferMetrics metrics;
+    private boolean bigEndian = true;
     
     /**
      * Create a new RingBuffer of the specified size.
@@ -20,6 +31,7 @@ public class RingBuffer {
      */
     public RingBuffer(int size) {
         byteArray = new byte[size];
+        end = size;
     }
 
     /**
@@ -28,6 +40,7 @@ public class RingBuffer {
      */
     public RingBuffer(byte[] buffer) {
         byteArray = buffer;
+        end = buffer.length;
     }
 
     /**
@@ -37,7 +50,30 @@ public class RingBuffer {
      * @param length The length of the data in the array.
      */
     public RingBuffer(byte[] buffer, int tail, int length) {
+        this(buffer, 0, buffer.length, tail, length);
+    }
+
+    /**
+     * Turn a region of a byte array into a RingBuffer, so that several
+     * RingBuffers may share one large array.
+     * The RingBuffer never touches the array outside of the region, and the
+     * pointers passed to readers and writers and returned by
+     * {@link #getTail()} are indexes into the whole array.
+     * @param buffer A byte array containing the region.
+     * @param offset The index in the array at which the region begins.
+     * @param size The size in bytes of the region.
+     * @param tail The pointer to the beginning of the data in the array,
+     * which must lie within the region.
+     * @param length The length of the data in the region.
+     */
+    public RingBuffer(byte[] buffer, int offset, int size, int tail, int length) {
+        if(offset < 0 || size < 0 || offset + size > buffer.length) {
+            throw new IndexOutOfBoundsException("Region " + offset + "+" + size
+                    + " is outside of an array of " + buffer.length + " bytes");
+        }
         byteArray = buffer;
+        start = offset;
+        end = offset + size;
         this.tail = tail;
         this.length = length;
     }
@@ -55,21 +91,24 @@ public class RingBuffer {
      * space in the RingBuffer, or zero if the RingBuffer is full.
      */
     public int write(byte[] buffer, int offset, int length) {
-        int head = (this.tail + this.length) % byteArray.length;
-        int toEnd = byteArray.length - head;
+        int head = wrap(this.tail + this.length);
+        int toEnd = end - head;
         // if the request exceeds the free space, write as much as possible
-        int toWrite = Math.min(length, byteArray.length - this.length);
+        int toWrite = Math.min(length, end - start - this.length);
         if(toWrite > toEnd) {
             // write from the head to the end
             System.arraycopy(buffer, offset, byteArray, head, toEnd);
             // write the remainder from the beginning
-            System.arraycopy(buffer, offset + toEnd, byteArray, 0, toWrite - toEnd);
+            System.arraycopy(buffer, offset + toEnd, byteArray, start, toWrite - toEnd);
         } else {
             // write the whole thing at once
             System.arraycopy(buffer, offset, byteArray, head, toWrite);
         }
         // writing increases the length
         this.length += toWrite;
+        if(metrics != null) {
+            metrics.recordWrite(toWrite, toWrite < length, toWrite > toEnd, this.length);
+        }
         return toWrite;
     }
     
@@ -90,21 +129,24 @@ public class RingBuffer {
      * space in the RingBuffer, or zero if the RingBuffer is full.
      */
     public int writer(RingBufferWriter writer, int length) {
-        int head = (this.tail + this.length) % byteArray.length;
-        int toEnd = byteArray.length - head;
+        int head = wrap(this.tail + this.length);
+        int toEnd = end - head;
         // if the request exceeds the free space, write as much as possible
-        int toWrite = Math.min(length, byteArray.length - this.length);
+        int toWrite = Math.min(length, end - start - this.length);
         if(toWrite > toEnd) {
             // write from the head to the end
             writer.write(byteArray, head, toEnd);
             // write the remainder from the beginning
-            writer.write(byteArray, 0, toWrite - toEnd);
+            writer.write(byteArray, start, toWrite - toEnd);
         } else {
             // write the whole thing at once
             writer.write(byteArray, head, toWrite);
         }
         // writing increases the length
         this.length += toWrite;
+        if(metrics != null) {
+            metrics.recordWrite(toWrite, toWrite < length, toWrite > toEnd, this.length);
+        }
         return toWrite;
     }
     
@@ -119,21 +161,24 @@ public class RingBuffer {
      * the buffer, or zero if the buffer was empty.
      */
     public int read(byte[] buffer, int offset, int length) {
-        int toEnd = byteArray.length - this.tail;
+        int toEnd = end - this.tail;
         // if the request exceeds the available data, read as much as is available
         int toRead = Math.min(length, this.length);
         if(toRead > toEnd) {
             // read from the tail to the end
             System.arraycopy(byteArray, this.tail, buffer, offset, toEnd);
             // read the requested remainder from the beginning
-            System.arraycopy(byteArray, 0, buffer, offset + toEnd, toRead - toEnd);
+            System.arraycopy(byteArray, start, buffer, offset + toEnd, toRead - toEnd);
         } else {
             // read the whole requested thing at once
             System.arraycopy(byteArray, this.tail, buffer, offset, toRead);
         }
         // reading moves the tail and decreases the length
-        this.tail = (this.tail + toRead) % byteArray.length;
+        this.tail = wrap(this.tail + toRead);
         this.length -= toRead;
+        if(metrics != null) {
+            metrics.recordRead(toRead, toRead == 0 && length > 0, toRead > toEnd);
+        }
         return toRead;
     }
 
@@ -154,24 +199,805 @@ public class RingBuffer {
      * the buffer, or zero if the buffer was empty.
      */
     public int reader(RingBufferReader reader, int length) {
-        int toEnd = byteArray.length - this.tail;
+        int toEnd = end - this.tail;
         // if the request exceeds the available data, read as much as is available
         int toRead = Math.min(length, this.length);
         if(toRead > toEnd) {
             // read from the tail to the end
             reader.read(byteArray, this.tail, toEnd);
             // read the requested remainder from the beginning
-            reader.read(byteArray, 0, toRead - toEnd);
+            reader.read(byteArray, start, toRead - toEnd);
         } else {
             // read the whole requested thing at once
             reader.read(byteArray, this.tail, toRead);
         }
         // reading moves the tail and decreases the length
-        this.tail = (this.tail + toRead) % byteArray.length;
+        this.tail = wrap(this.tail + toRead);
         this.length -= toRead;
+        if(metrics != null) {
+            metrics.recordRead(toRead, toRead == 0 && length > 0, toRead > toEnd);
+        }
         return toRead;
     }
     
+    /**
+     * Deliver all of the data in the RingBuffer, up to a limit, to a reader
+     * in a single batch.
+     * This behaves like {@link #reader(RingBufferReader, int)}, invoking the
+     * reader zero, one, or two times, and then, if the reader is a
+     * {@link RingBufferBatchReader} and the batch was not empty, invokes its
+     * end-of-batch hook once.
+     * 
+     * @param reader An object implementing the RingBufferReader interface.
+     * @param maxBytes The maximum number of bytes to be delivered.
+     * @return The number of bytes delivered, or zero if the buffer was empty.
+     */
+    public int drainTo(RingBufferReader reader, int maxBytes) {
+        int toRead = reader(reader, maxBytes);
+        if(toRead > 0 && reader instanceof RingBufferBatchReader) {
+            ((RingBufferBatchReader)reader).endOfBatch(toRead);
+        }
+        return toRead;
+    }
+
+    /**
+     * Write a single byte to the RingBuffer.
+     * 
+     * @param b The byte to be written.
+     * @return True if the byte was written, or false if the RingBuffer is
+     * full.
+     */
+    public boolean put(byte b) {
+        if(this.length == end - start) {
+            if(metrics != null) {
+                metrics.recordWrite(0, true, false, this.length);
+            }
+            return false;
+        }
+        byteArray[wrap(this.tail + this.length)] = b;
+        this.length++;
+        if(metrics != null) {
+            metrics.recordWrite(1, false, false, this.length);
+        }
+        return true;
+    }
+
+    /**
+     * Write a small record to the RingBuffer in its entirety.
+     * Unlike {@link #write(byte[], int, int)}, either the whole record is
+     * written or none of it is, and the bytes are copied one at a time
+     * rather than by splitting the record into two array copies, which is
+     * cheaper for records of only a few bytes.
+     * 
+     * @param buffer A byte array from which the record will be copied.
+     * @param offset The offset in the byte array where the record begins.
+     * @param length The length of the record.
+     * @return True if the record was written, or false if there is
+     * insufficient free space in the RingBuffer.
+     */
+    public boolean put(byte[] buffer, int offset, int length) {
+        if(length > end - start - this.length) {
+            if(metrics != null) {
+                metrics.recordWrite(0, true, false, this.length);
+            }
+            return false;
+        }
+        int head = wrap(this.tail + this.length);
+        boolean wrapped = length > end - head;
+        for(int i = 0; i < length; i++) {
+            byteArray[head] = buffer[offset + i];
+            head = wrap(head + 1);
+        }
+        // writing increases the length
+        this.length += length;
+        if(metrics != null) {
+            metrics.recordWrite(length, false, wrapped, this.length);
+        }
+        return true;
+    }
+
+    /**
+     * Read a single byte from the RingBuffer.
+     * 
+     * @return The byte read, as an int in the range 0 to 255, or -1 if the
+     * RingBuffer is empty.
+     */
+    public int get() {
+        if(this.length == 0) {
+            if(metrics != null) {
+                metrics.recordRead(0, true, false);
+            }
+            return -1;
+        }
+        int b = byteArray[this.tail] & 0xff;
+        this.tail = wrap(this.tail + 1);
+        this.length--;
+        if(metrics != null) {
+            metrics.recordRead(1, false, false);
+        }
+        return b;
+    }
+
+    /**
+     * Read a small record from the RingBuffer in its entirety.
+     * Unlike {@link #read(byte[], int, int)}, either the whole record is read
+     * or none of it is, and the bytes are copied one at a time.
+     * 
+     * @param buffer A byte array in which the record will be placed.
+     * @param offset The offset in the byte array where the record should be placed.
+     * @param length The length of the record.
+     * @return True if the record was read, or false if there were fewer
+     * bytes in the RingBuffer.
+     */
+    public boolean get(byte[] buffer, int offset, int length) {
+        if(length > this.length) {
+            if(metrics != null) {
+                metrics.recordRead(0, true, false);
+            }
+            return false;
+        }
+        int tail = this.tail;
+        boolean wrapped = length > end - tail;
+        for(int i = 0; i < length; i++) {
+            buffer[offset + i] = byteArray[tail];
+            tail = wrap(tail + 1);
+        }
+        // reading moves the tail and decreases the length
+        this.tail = tail;
+        this.length -= length;
+        if(metrics != null) {
+            metrics.recordRead(length, false, wrapped);
+        }
+        return true;
+    }
+
+    /**
+     * Write a short to the RingBuffer in the current byte order.
+     * 
+     * @param value The value to be written.
+     * @return True if the value was written, or false if there is
+     * insufficient free space in the RingBuffer.
+     */
+    public boolean putShort(short value) {
+        return putBits(value, 2);
+    }
+
+    /**
+     * Write an int to the RingBuffer in the current byte order.
+     * 
+     * @param value The value to be written.
+     * @return True if the value was written, or false if there is
+     * insufficient free space in the RingBuffer.
+     */
+    public boolean putInt(int value) {
+        return putBits(value, 4);
+    }
+
+    /**
+     * Write a long to the RingBuffer in the current byte order.
+     * 
+     * @param value The value to be written.
+     * @return True if the value was written, or false if there is
+     * insufficient free space in the RingBuffer.
+     */
+    public boolean putLong(long value) {
+        return putBits(value, 8);
+    }
+
+    /**
+     * Write a float to the RingBuffer in the current byte order.
+     * 
+     * @param value The value to be written.
+     * @return True if the value was written, or false if there is
+     * insufficient free space in the RingBuffer.
+     */
+    public boolean putFloat(float value) {
+        return putInt(Float.floatToRawIntBits(value));
+    }
+
+    /**
+     * Write a double to the RingBuffer in the current byte order.
+     * 
+     * @param value The value to be written.
+     * @return True if the value was written, or false if there is
+     * insufficient free space in the RingBuffer.
+     */
+    public boolean putDouble(double value) {
+        return putLong(Double.doubleToRawLongBits(value));
+    }
+
+    /**
+     * Read a short from the RingBuffer in the current byte order.
+     * 
+     * @return The value read.
+     * @throws BufferUnderflowException If there are fewer than two bytes in
+     * the RingBuffer, in which case nothing is consumed.
+     */
+    public short getShort() {
+        return (short)getBits(2);
+    }
+
+    /**
+     * Read an int from the RingBuffer in the current byte order.
+     * 
+     * @return The value read.
+     * @throws BufferUnderflowException If there are fewer than four bytes in
+     * the RingBuffer, in which case nothing is consumed.
+     */
+    public int getInt() {
+        return (int)getBits(4);
+    }
+
+    /**
+     * Read a long from the RingBuffer in the current byte order.
+     * 
+     * @return The value read.
+     * @throws BufferUnderflowException If there are fewer than eight bytes in
+     * the RingBuffer, in which case nothing is consumed.
+     */
+    public long getLong() {
+        return getBits(8);
+    }
+
+    /**
+     * Read a float from the RingBuffer in the current byte order.
+     * 
+     * @return The value read.
+     * @throws BufferUnderflowException If there are fewer than four bytes in
+     * the RingBuffer, in which case nothing is consumed.
+     */
+    public float getFloat() {
+        return Float.intBitsToFloat(getInt());
+    }
+
+    /**
+     * Read a double from the RingBuffer in the current byte order.
+     * 
+     * @return The value read.
+     * @throws BufferUnderflowException If there are fewer than eight bytes in
+     * the RingBuffer, in which case nothing is consumed.
+     */
+    public double getDouble() {
+        return Double.longBitsToDouble(getLong());
+    }
+
+    /**
+     * Write the low bytes of a value in the current byte order.
+     * @param value The value to be written.
+     * @param size The number of bytes to be written.
+     * @return True if the value was written.
+     */
+    private boolean putBits(long value, int size) {
+        if(size > end - start - this.length) {
+            if(metrics != null) {
+                metrics.recordWrite(0, true, false, this.length);
+            }
+            return false;
+        }
+        int head = wrap(this.tail + this.length);
+        int shift = bigEndian ? (size - 1) * 8 : 0;
+        int step = bigEndian ? -8 : 8;
+        boolean wrapped = size > end - head;
+        if(wrapped) {
+            // write a byte at a time across the end of the array
+            for(int i = 0; i < size; i++, shift += step) {
+                byteArray[head] = (byte)(value >>> shift);
+                head = wrap(head + 1);
+            }
+        } else {
+            // write the whole thing in place
+            for(int i = 0; i < size; i++, shift += step) {
+                byteArray[head + i] = (byte)(value >>> shift);
+            }
+        }
+        // writing increases the length
+        this.length += size;
+        if(metrics != null) {
+            metrics.recordWrite(size, false, wrapped, this.length);
+        }
+        return true;
+    }
+
+    /**
+     * Read a value of several bytes in the current byte order.
+     * @param size The number of bytes to be read.
+     * @return The value read, in the low bytes of a long.
+     * @throws BufferUnderflowException If there are too few bytes.
+     */
+    private long getBits(int size) {
+        if(size > this.length) {
+            if(metrics != null) {
+                metrics.recordRead(0, true, false);
+            }
+            throw new BufferUnderflowException();
+        }
+        int tail = this.tail;
+        int shift = bigEndian ? (size - 1) * 8 : 0;
+        int step = bigEndian ? -8 : 8;
+        long value = 0;
+        boolean wrapped = size > end - tail;
+        if(wrapped) {
+            // read a byte at a time across the end of the array
+            for(int i = 0; i < size; i++, shift += step) {
+                value |= (byteArray[tail] & 0xffL) << shift;
+                tail = wrap(tail + 1);
+            }
+        } else {
+            // read the whole thing in place
+            for(int i = 0; i < size; i++, shift += step) {
+                value |= (byteArray[tail + i] & 0xffL) << shift;
+            }
+            tail = wrap(tail + size);
+        }
+        // reading moves the tail and decreases the length
+        this.tail = tail;
+        this.length -= size;
+        if(metrics != null) {
+            metrics.recordRead(size, false, wrapped);
+        }
+        return value;
+    }
+
+    /**
+     * Set the byte order used by the typed put and get methods.
+     * @param order The byte order, which is big-endian by default.
+     */
+    public void setByteOrder(ByteOrder order) {
+        bigEndian = order == ByteOrder.BIG_ENDIAN;
+    }
+
+    /**
+     * Get the byte order used by the typed put and get methods.
+     * @return The byte order.
+     */
+    public ByteOrder getByteOrder() {
+        return bigEndian ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN;
+    }
+
+    /**
+     * Copy from the RingBuffer into a byte array without consuming the data.
+     * 
+     * @param buffer A byte array in which the data will be placed.
+     * @param offset The offset in the byte array where the data should be placed.
+     * @param length The number of bytes to be copied.
+     * @return The number of bytes copied.  This may be less than the
+     * requested length if there were fewer bytes in the buffer, or zero if
+     * the buffer was empty.
+     */
+    public int peek(byte[] buffer, int offset, int length) {
+        int toEnd = end - this.tail;
+        // if the request exceeds the available data, copy as much as is available
+        int toPeek = Math.min(length, this.length);
+        if(toPeek > toEnd) {
+            // copy from the tail to the end
+            System.arraycopy(byteArray, this.tail, buffer, offset, toEnd);
+            // copy the requested remainder from the beginning
+            System.arraycopy(byteArray, start, buffer, offset + toEnd, toPeek - toEnd);
+        } else {
+            // copy the whole requested thing at once
+            System.arraycopy(byteArray, this.tail, buffer, offset, toPeek);
+        }
+        return toPeek;
+    }
+
+    /**
+     * Examine data via callbacks on a supplied object without consuming it.
+     * The reader is invoked zero, one, or two times against the RingBuffer's
+     * internal byte array exactly as in
+     * {@link #reader(RingBufferReader, int)}, but the tail does not move, so
+     * the data can be decoded in place and consumed later with
+     * {@link #skip(int)} once it is known to be complete.
+     * 
+     * @param reader An object implementing the RingBufferReader interface.
+     * @param length The number of bytes to be examined.
+     * @return The number of bytes presented to the reader.
+     */
+    public int peek(RingBufferReader reader, int length) {
+        int toEnd = end - this.tail;
+        // if the request exceeds the available data, present as much as is available
+        int toPeek = Math.min(length, this.length);
+        if(toPeek > toEnd) {
+            // present from the tail to the end
+            reader.read(byteArray, this.tail, toEnd);
+            // present the requested remainder from the beginning
+            reader.read(byteArray, start, toPeek - toEnd);
+        } else {
+            // present the whole requested thing at once
+            reader.read(byteArray, this.tail, toPeek);
+        }
+        return toPeek;
+    }
+
+    /**
+     * Get a byte of the data without consuming anything.
+     * 
+     * @param index The position of the byte relative to the tail, so that
+     * zero is the next byte which would be read.
+     * @return The byte at that position.
+     * @throws IndexOutOfBoundsException If the index is negative or not less
+     * than the length of the data.
+     */
+    public byte get(int index) {
+        if(index < 0 || index >= this.length) {
+            throw new IndexOutOfBoundsException("Index " + index + " of " + this.length);
+        }
+        return byteArray[wrap(this.tail + index)];
+    }
+
+    /**
+     * Discard data from the RingBuffer.
+     * 
+     * @param length The number of bytes to be discarded.
+     * @return The number of bytes discarded.  This may be less than the
+     * requested length if there were fewer bytes in the buffer.
+     */
+    public int skip(int length) {
+        int toEnd = end - this.tail;
+        int toSkip = Math.max(Math.min(length, this.length), 0);
+        // skipping moves the tail and decreases the length
+        this.tail = wrap(this.tail + toSkip);
+        this.length -= toSkip;
+        if(metrics != null) {
+            metrics.recordRead(toSkip, toSkip == 0 && length > 0, toSkip > toEnd);
+        }
+        return toSkip;
+    }
+
+    /**
+     * Discard the oldest data to make room, without recording it as read.
+     * This is intended for subclasses and views which overwrite old data
+     * rather than refuse new data.
+     * 
+     * @param length The number of bytes to be discarded.
+     * @return The number of bytes discarded.
+     */
+    protected int discard(int length) {
+        int toDiscard = Math.max(Math.min(length, this.length), 0);
+        // discarding moves the tail and decreases the length
+        this.tail = wrap(this.tail + toDiscard);
+        this.length -= toDiscard;
+        return toDiscard;
+    }
+
+    /**
+     * Take back the most recently written data, as if it had never been
+     * written.  This lets a view which writes a record in several steps
+     * abandon a partly written record.
+     * 
+     * @param length The number of bytes to be taken back, which must not
+     * exceed the length of the data.
+     */
+    void unwrite(int length) {
+        if(length < 0 || length > this.length) {
+            throw new IllegalArgumentException("Cannot take back " + length
+                    + " of " + this.length + " bytes");
+        }
+        // the head is derived from the tail and length, so this moves it back
+        this.length -= length;
+    }
+
+    /**
+     * Copy the whole of the data out in order without consuming it.
+     * This costs at most two array copies, so a caller sharing the
+     * RingBuffer under a lock need only hold it briefly to dump the contents.
+     * 
+     * @return A new array holding the data, oldest first.
+     */
+    public byte[] snapshot() {
+        byte[] copy = new byte[this.length];
+        peek(copy, 0, copy.length);
+        return copy;
+    }
+
+    /**
+     * Find the first occurrence of a byte in the data.
+     * 
+     * @param b The byte to search for.
+     * @return The position of the byte relative to the tail, or -1 if it does
+     * not occur.
+     */
+    public int indexOf(byte b) {
+        return indexOf(b, 0);
+    }
+
+    /**
+     * Find the first occurrence of a byte in the data at or after a position.
+     * The search runs over the two segments of the byte array in turn, so it
+     * costs no more than a scan of a flat array.
+     * 
+     * @param b The byte to search for.
+     * @param fromIndex The position relative to the tail at which to start.
+     * @return The position of the byte relative to the tail, or -1 if it does
+     * not occur.
+     */
+    public int indexOf(byte b, int fromIndex) {
+        int from = Math.max(fromIndex, 0);
+        if(from >= this.length) {
+            return -1;
+        }
+        int toEnd = end - this.tail;
+        if(from < toEnd) {
+            // search from the tail towards the end
+            int stop = this.tail + Math.min(this.length, toEnd);
+            for(int i = this.tail + from; i < stop; i++) {
+                if(byteArray[i] == b) {
+                    return i - this.tail;
+                }
+            }
+            from = toEnd;
+        }
+        // search the wrapped remainder from the beginning
+        int stop = start + this.length - toEnd;
+        for(int i = start + from - toEnd; i < stop; i++) {
+            if(byteArray[i] == b) {
+                return i - start + toEnd;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Find the first occurrence of a sequence of bytes, such as a delimiter,
+     * in the data.  The sequence may straddle the end of the byte array.
+     * 
+     * @param sequence The bytes to search for.
+     * @return The position of the start of the sequence relative to the tail,
+     * or -1 if it does not occur.  An empty sequence is found at position
+     * zero.
+     */
+    public int indexOf(byte[] sequence) {
+        if(sequence.length == 0) {
+            return 0;
+        }
+        int last = this.length - sequence.length;
+        // find each candidate by its first byte, then compare the rest
+        for(int i = indexOf(sequence[0], 0); i >= 0 && i <= last; i = indexOf(sequence[0], i + 1)) {
+            int index = wrap(this.tail + i);
+            int j = 1;
+            while(j < sequence.length) {
+                index = wrap(index + 1);
+                if(byteArray[index] != sequence[j]) {
+                    break;
+                }
+                j++;
+            }
+            if(j == sequence.length) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Fill the RingBuffer from a channel.
+     * The free space is presented to the channel as up to two ByteBuffer
+     * views so that a wrapped transfer is satisfied by a single vectored
+     * read.  The views are cached and reused between calls.
+     * 
+     * @param channel The channel from which the data will be read.
+     * @return The number of bytes read into the RingBuffer, possibly zero, or
+     * -1 if the channel has reached end-of-stream.
+     * @throws IOException If the channel read fails.
+     */
+    public int readFrom(ScatteringByteChannel channel) throws IOException {
+        // ask for exactly the free space, so that filling it is not counted
+        // as a short write
+        return readFrom(channel, end - start - this.length);
+    }
+
+    /**
+     * Fill the RingBuffer from a channel, reading at most the specified number
+     * of bytes.
+     * 
+     * @param channel The channel from which the data will be read.
+     * @param length The maximum number of bytes to be read.
+     * @return The number of bytes read into the RingBuffer, possibly zero, or
+     * -1 if the channel has reached end-of-stream.
+     * This may be less than the requested length if there is insufficient free
+     * space in the RingBuffer, or zero if the RingBuffer is full.
+     * @throws IOException If the channel read fails.
+     * @see #readFrom(ScatteringByteChannel)
+     */
+    public int readFrom(ScatteringByteChannel channel, int length) throws IOException {
+        int head = wrap(this.tail + this.length);
+        int toEnd = end - head;
+        // if the request exceeds the free space, read as much as possible
+        int toWrite = Math.min(length, end - start - this.length);
+        if(toWrite == 0) {
+            if(metrics != null) {
+                metrics.recordWrite(0, length > 0, false, this.length);
+            }
+            return 0;
+        }
+        ByteBuffer[] views = getChannelViews();
+        long result;
+        if(toWrite > toEnd) {
+            // fill from the head to the end and the remainder from the beginning
+            view(views[0], head, toEnd);
+            view(views[1], start, toWrite - toEnd);
+            result = channel.read(views, 0, 2);
+        } else {
+            // fill the whole thing at once
+            view(views[0], head, toWrite);
+            result = channel.read(views, 0, 1);
+        }
+        // writing increases the length
+        if(result > 0) {
+            this.length += (int)result;
+            if(metrics != null) {
+                metrics.recordWrite((int)result, toWrite < length, result > toEnd, this.length);
+            }
+        }
+        return (int)result;
+    }
+
+    /**
+     * Drain the RingBuffer into a channel.
+     * The data is presented to the channel as up to two ByteBuffer views so
+     * that a wrapped transfer is satisfied by a single vectored write.  The
+     * views are cached and reused between calls.
+     * 
+     * @param channel The channel to which the data will be written.
+     * @return The number of bytes written from the RingBuffer, possibly zero.
+     * @throws IOException If the channel write fails.
+     */
+    public int writeTo(GatheringByteChannel channel) throws IOException {
+        return writeTo(channel, end - start);
+    }
+
+    /**
+     * Drain the RingBuffer into a channel, writing at most the specified
+     * number of bytes.
+     * 
+     * @param channel The channel to which the data will be written.
+     * @param length The maximum number of bytes to be written.
+     * @return The number of bytes written from the RingBuffer.
+     * This may be less than the requested length if there were fewer bytes in
+     * the buffer or the channel accepted fewer, or zero if the buffer was
+     * empty.
+     * @throws IOException If the channel write fails.
+     * @see #writeTo(GatheringByteChannel)
+     */
+    public int writeTo(GatheringByteChannel channel, int length) throws IOException {
+        int toEnd = end - this.tail;
+        // if the request exceeds the available data, write as much as is available
+        int toRead = Math.min(length, this.length);
+        if(toRead == 0) {
+            if(metrics != null) {
+                metrics.recordRead(0, length > 0, false);
+            }
+            return 0;
+        }
+        ByteBuffer[] views = getChannelViews();
+        long result;
+        if(toRead > toEnd) {
+            // drain from the tail to the end and the remainder from the beginning
+            view(views[0], this.tail, toEnd);
+            view(views[1], start, toRead - toEnd);
+            result = channel.write(views, 0, 2);
+        } else {
+            // drain the whole thing at once
+            view(views[0], this.tail, toRead);
+            result = channel.write(views, 0, 1);
+        }
+        // reading moves the tail and decreases the length
+        this.tail = wrap(this.tail + (int)result);
+        this.length -= (int)result;
+        if(metrics != null) {
+            metrics.recordRead((int)result, false, result > toEnd);
+        }
+        return (int)result;
+    }
+
+    /**
+     * Get the cached ByteBuffer views of the underlying byte array used for
+     * channel transfers, creating them on first use.
+     * @return A pair of views of the underlying byte array.
+     */
+    private ByteBuffer[] getChannelViews() {
+        if(channelViews == null) {
+            channelViews = new ByteBuffer[] {
+                ByteBuffer.wrap(byteArray), ByteBuffer.wrap(byteArray)
+            };
+        }
+        return channelViews;
+    }
+
+    /**
+     * Point a reusable view at a region of the underlying byte array.
+     * @param view A view of the underlying byte array.
+     * @param index The index at which the region begins.
+     * @param length The length of the region.
+     */
+    private static void view(ByteBuffer view, int index, int length) {
+        view.clear();
+        view.position(index);
+        view.limit(index + length);
+    }
+
+    /**
+     * Reduce a pointer which may have run past the end of the byte array back
+     * into range.  Both the tail and the length are already in range, so at
+     * most one subtraction is needed and the division of a modulo is avoided.
+     * @param pointer A pointer less than twice the capacity.
+     * @return The equivalent pointer within the byte array.
+     */
+    private int wrap(int pointer) {
+        return pointer < end ? pointer : pointer - (end - start);
+    }
+
+    /**
+     * Discard all of the data in the RingBuffer.
+     */
+    public void clear() {
+        this.tail = start;
+        this.length = 0;
+    }
+
+    /**
+     * Make room, if the RingBuffer is able to, for a write of the specified
+     * length.  A plain RingBuffer has a fixed capacity, so this does nothing;
+     * subclasses which manage their own capacity grow here.  Views which
+     * check the free space before writing call this first.
+     * 
+     * @param length The number of bytes about to be written.
+     */
+    protected void ensureFree(int length) {
+    }
+
+    /**
+     * Move the data into a new byte array of a different size.
+     * The data is unwrapped so that it begins at the start of the new array,
+     * and any array previously returned by {@link #getByteArray()} is no
+     * longer used by the RingBuffer.  This is intended for subclasses which
+     * manage their own capacity.
+     * 
+     * @param size The size in bytes of the new byte array.
+     * @throws IllegalArgumentException If the data would not fit in the new
+     * byte array.
+     */
+    protected void resize(int size) {
+        if(size < this.length) {
+            throw new IllegalArgumentException("Data of " + this.length
+                    + " bytes does not fit in " + size + " bytes");
+        }
+        byte[] resized = new byte[size];
+        int toEnd = end - this.tail;
+        if(this.length > toEnd) {
+            // copy from the tail to the end
+            System.arraycopy(byteArray, this.tail, resized, 0, toEnd);
+            // copy the remainder from the beginning
+            System.arraycopy(byteArray, start, resized, toEnd, this.length - toEnd);
+        } else {
+            // copy the whole thing at once
+            System.arraycopy(byteArray, this.tail, resized, 0, this.length);
+        }
+        byteArray = resized;
+        start = 0;
+        end = size;
+        this.tail = 0;
+        // the channel views wrap the old array
+        channelViews = null;
+    }
+
+    /**
+     * Attach metrics to the RingBuffer, or detach them.
+     * While attached, every transfer is recorded in the metrics; while
+     * detached, the only cost is a null check.
+     * @param metrics The metrics to be updated, or null for none.
+     */
+    public void setMetrics(RingBufferMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Get the metrics attached to the RingBuffer.
+     * @return The attached metrics, or null if there are none.
+     */
+    public RingBufferMetrics getMetrics() {
+        return metrics;
+    }
+
     /**
      * Get the length of the data contained in the RingBuffer.
      * @return The length of the data in bytes.
@@ -185,7 +1011,7 @@ public class RingBuffer {
      * @return The maximum capacity in bytes.
      */
     public int getMaxLength() {
-        return byteArray.length;
+        return end - start;
     }
     
     /**
@@ -193,7 +1019,7 @@ public class RingBuffer {
      * @return The unused capacity in bytes.
      */
     public int getFreeSpace() {
-        return byteArray.length - length;
+        return end - start - length;
     }
     
     /**
@@ -204,6 +1030,16 @@ public class RingBuffer {
         return byteArray;
     }
 
+    /**
+     * Get the index in the underlying byte array at which the RingBuffer's
+     * region begins.  This is zero unless the RingBuffer was created on a
+     * region of a larger array.
+     * @return The offset of the region.
+     */
+    public int getOffset() {
+        return start;
+    }
+
     /**
      * Get the tail pointer for the underlying byte array.
      * @return The tail pointer.
@@ -213,6 +1049,7 @@ public class RingBuffer {
     }
     
     @Override public String toString() {
-        return Arrays.toString(byteArray) + ", " + tail + ", " + length;
+        return Arrays.toString(Arrays.copyOfRange(byteArray, start, end))
+                + ", " + tail + ", " + length;
     }
 }
\ No newline at end of file
@@ -0,0 +1,25 @@
+/*
+ * Byte-Array Ring Buffer Batch Reader
+ */
+package com.awirtz.util;
+
+/**
+ * An extension of the callback read interface which is told when a batch
+ * delivered by {@link RingBuffer#drainTo(RingBufferReader, int)} is
+ * complete, so that downstream work such as flushing can be done once per
+ * batch rather than once per segment.
+ * 
+ * @author Aaron Meriwether
+ */
+public interface RingBufferBatchReader extends RingBufferReader {
+    
+    /**
+     * A callback method which the ring buffer will invoke once after the
+     * segments of a non-empty batch have been delivered to
+     * {@link RingBufferReader#read(byte[], int, int)} and the space they
+     * occupied has been released.
+     * 
+     * @param length The total number of bytes in the batch.
+     */
+    public void endOfBatch(int length);
+}
@@ -0,0 +1,29 @@
+/*
+ * Ring Buffer Callback
+ */
+package com.awirtz.util;
+
+/**
+ * An interface describing the completion callback of an asynchronous write
+ * or read on an {@link AsyncRingBuffer}.  This lets the result be acted upon
+ * without blocking a thread in {@link java.util.concurrent.Future#get()}.
+ * 
+ * @author Aaron Meriwether
+ */
+public interface RingBufferCallback {
+
+    /**
+     * Invoked when the operation completes.
+     * @param result The number of bytes transferred, or -1 for a read of a
+     * closed and empty buffer.
+     */
+    public void completed(int result);
+
+    /**
+     * Invoked when the operation fails or is cancelled.
+     * @param error The cause of the failure, which is a
+     * {@link java.util.concurrent.CancellationException} if the operation
+     * was cancelled.
+     */
+    public void failed(Throwable error);
+}
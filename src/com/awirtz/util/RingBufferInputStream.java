@@ -0,0 +1,99 @@
+/*
+ * Ring Buffer Input Stream
+ */
+package com.awirtz.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * A non-blocking InputStream view of a {@link RingBuffer}.
+ * Reading consumes data from the RingBuffer.  When the RingBuffer is empty
+ * the stream reports end-of-stream, as a ByteArrayInputStream does, but more
+ * data may be read once more has been written to the RingBuffer.  For a
+ * blocking stream between two threads, use {@link RingBufferPipe}.
+ * 
+ * @author Aaron Meriwether
+ */
+public class RingBufferInputStream extends InputStream {
+    private final RingBuffer ringBuffer;
+
+    /**
+     * Create a new RingBufferInputStream.
+     * @param ringBuffer The RingBuffer from which data will be read.
+     */
+    public RingBufferInputStream(RingBuffer ringBuffer) {
+        this.ringBuffer = ringBuffer;
+    }
+
+    /**
+     * Read a single byte.
+     * @return The byte read, as an int in the range 0 to 255, or -1 if the
+     * RingBuffer is empty.
+     */
+    @Override public int read() {
+        return ringBuffer.get();
+    }
+
+    /**
+     * Read into a byte array.
+     * @param buffer A byte array in which the read data will be placed.
+     * @param offset The offset in the byte array where the read data should be placed.
+     * @param length The maximum number of bytes to be read.
+     * @return The number of bytes read, or -1 if the RingBuffer is empty and
+     * the requested length was not zero.
+     */
+    @Override public int read(byte[] buffer, int offset, int length) {
+        if(offset < 0 || length < 0 || length > buffer.length - offset) {
+            throw new IndexOutOfBoundsException();
+        }
+        if(length == 0) {
+            return 0;
+        }
+        int toRead = ringBuffer.read(buffer, offset, length);
+        return toRead == 0 ? -1 : toRead;
+    }
+
+    /**
+     * Discard data from the RingBuffer.
+     * @param n The maximum number of bytes to be discarded.
+     * @return The number of bytes discarded.
+     */
+    @Override public long skip(long n) {
+        return ringBuffer.skip((int)Math.max(Math.min(n, ringBuffer.getLength()), 0));
+    }
+
+    /**
+     * Get the number of bytes which can be read.
+     * @return The length of the data in the RingBuffer.
+     */
+    @Override public int available() {
+        return ringBuffer.getLength();
+    }
+
+    /**
+     * Write all of the data in the RingBuffer to an OutputStream.
+     * The data is written directly from the RingBuffer's byte array in at
+     * most two calls, with no intermediate copy.
+     * @param out The stream to which the data will be written.
+     * @return The number of bytes transferred.
+     * @throws IOException If the OutputStream fails, in which case no data
+     * is consumed from the RingBuffer, although some may have been written.
+     */
+    public long transferTo(OutputStream out) throws IOException {
+        try {
+            return ringBuffer.reader(new StreamTransfer(out), ringBuffer.getLength());
+        } catch(StreamTransfer.Failure e) {
+            throw e.unwrap();
+        }
+    }
+
+    /**
+     * Get the underlying RingBuffer.
+     * @return The underlying RingBuffer.
+     */
+    public RingBuffer getRingBuffer() {
+        return ringBuffer;
+    }
+}
@@ -0,0 +1,220 @@
+/*
+ * Ring Buffer Metrics
+ */
+package com.awirtz.util;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Optional counters describing the traffic through a ring buffer.
+ * An instance is attached with {@link RingBuffer#setMetrics(RingBufferMetrics)}
+ * (or the equivalent method of {@link SpscRingBuffer} and
+ * {@link MpscRingBuffer}); buffers without one pay only a null check.
+ * Counters are striped across cache lines so that concurrent producers and
+ * consumers do not contend on them.
+ * 
+ * The current values can be read individually, copied out together with
+ * {@link #snapshot()}, or published over JMX with {@link #register(String)}.
+ * 
+ * @author Aaron Meriwether
+ */
+public class RingBufferMetrics implements RingBufferMetricsMBean {
+    private final StripedCounter bytesWritten = new StripedCounter();
+    private final StripedCounter bytesRead = new StripedCounter();
+    private final StripedCounter shortWrites = new StripedCounter();
+    private final StripedCounter emptyReads = new StripedCounter();
+    private final StripedCounter wrappedTransfers = new StripedCounter();
+    private final AtomicLong highWaterMark = new AtomicLong();
+    private ObjectName objectName;
+
+    /**
+     * Record a write operation.
+     * @param written The number of bytes actually written.
+     * @param truncated Whether less was written than requested because the
+     * buffer lacked free space.
+     * @param wrapped Whether the write wrapped around the end of the buffer.
+     * @param occupancy The number of bytes in the buffer after the write.
+     */
+    void recordWrite(int written, boolean truncated, boolean wrapped, long occupancy) {
+        if(written > 0) {
+            bytesWritten.add(written);
+        }
+        if(truncated) {
+            shortWrites.increment();
+        }
+        if(wrapped) {
+            wrappedTransfers.increment();
+        }
+        // only contend on the mark when it actually moves
+        long mark = highWaterMark.get();
+        while(occupancy > mark && !highWaterMark.compareAndSet(mark, occupancy)) {
+            mark = highWaterMark.get();
+        }
+    }
+
+    /**
+     * Record a read operation.
+     * @param read The number of bytes actually read.
+     * @param empty Whether the read was refused because the buffer held no
+     * data, or too little for an all-or-nothing read.
+     * @param wrapped Whether the read wrapped around the end of the buffer.
+     */
+    void recordRead(int read, boolean empty, boolean wrapped) {
+        if(read > 0) {
+            bytesRead.add(read);
+        }
+        if(empty) {
+            emptyReads.increment();
+        }
+        if(wrapped) {
+            wrappedTransfers.increment();
+        }
+    }
+
+    @Override public long getBytesWritten() {
+        return bytesWritten.sum();
+    }
+
+    @Override public long getBytesRead() {
+        return bytesRead.sum();
+    }
+
+    @Override public long getShortWrites() {
+        return shortWrites.sum();
+    }
+
+    @Override public long getEmptyReads() {
+        return emptyReads.sum();
+    }
+
+    @Override public long getWrappedTransfers() {
+        return wrappedTransfers.sum();
+    }
+
+    @Override public long getHighWaterMark() {
+        return highWaterMark.get();
+    }
+
+    @Override public void reset() {
+        bytesWritten.reset();
+        bytesRead.reset();
+        shortWrites.reset();
+        emptyReads.reset();
+        wrappedTransfers.reset();
+        highWaterMark.set(0);
+    }
+
+    /**
+     * Copy all of the current values.  The values are read one after another,
+     * so they are only mutually consistent if the buffer is idle.
+     * @return A snapshot of the metrics.
+     */
+    public Snapshot snapshot() {
+        return new Snapshot(this);
+    }
+
+    /**
+     * Register these metrics with the platform MBean server under the name
+     * {@code com.awirtz.util:type=RingBuffer,name=<name>}.
+     * @param name A name identifying the ring buffer.
+     * @return The ObjectName under which the metrics were registered.
+     * @throws JMException If the registration fails, for example because the
+     * name is already in use.
+     */
+    public synchronized ObjectName register(String name) throws JMException {
+        ObjectName on = new ObjectName("com.awirtz.util:type=RingBuffer,name="
+                + ObjectName.quote(name));
+        ManagementFactory.getPlatformMBeanServer().registerMBean(this, on);
+        objectName = on;
+        return on;
+    }
+
+    /**
+     * Remove these metrics from the platform MBean server, if registered.
+     * @throws JMException If the unregistration fails.
+     */
+    public synchronized void unregister() throws JMException {
+        if(objectName != null) {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+            objectName = null;
+        }
+    }
+
+    @Override public String toString() {
+        return snapshot().toString();
+    }
+
+    /**
+     * An immutable copy of the values of a {@link RingBufferMetrics}.
+     */
+    public static class Snapshot {
+        private final long bytesWritten;
+        private final long bytesRead;
+        private final long shortWrites;
+        private final long emptyReads;
+        private final long wrappedTransfers;
+        private final long highWaterMark;
+
+        private Snapshot(RingBufferMetrics metrics) {
+            bytesWritten = metrics.getBytesWritten();
+            bytesRead = metrics.getBytesRead();
+            shortWrites = metrics.getShortWrites();
+            emptyReads = metrics.getEmptyReads();
+            wrappedTransfers = metrics.getWrappedTransfers();
+            highWaterMark = metrics.getHighWaterMark();
+        }
+
+        /**
+         * @return The total number of bytes written.
+         */
+        public long getBytesWritten() {
+            return bytesWritten;
+        }
+
+        /**
+         * @return The total number of bytes read.
+         */
+        public long getBytesRead() {
+            return bytesRead;
+        }
+
+        /**
+         * @return The number of writes cut short because the buffer was full.
+         */
+        public long getShortWrites() {
+            return shortWrites;
+        }
+
+        /**
+         * @return The number of reads which found the buffer empty.
+         */
+        public long getEmptyReads() {
+            return emptyReads;
+        }
+
+        /**
+         * @return The number of transfers which wrapped around the end of the
+         * buffer.
+         */
+        public long getWrappedTransfers() {
+            return wrappedTransfers;
+        }
+
+        /**
+         * @return The greatest number of bytes the buffer has held at once.
+         */
+        public long getHighWaterMark() {
+            return highWaterMark;
+        }
+
+        @Override public String toString() {
+            return "bytesWritten=" + bytesWritten + ", bytesRead=" + bytesRead
+                    + ", shortWrites=" + shortWrites + ", emptyReads=" + emptyReads
+                    + ", wrappedTransfers=" + wrappedTransfers
+                    + ", highWaterMark=" + highWaterMark;
+        }
+    }
+}
@@ -0,0 +1,56 @@
+/*
+ * Ring Buffer Metrics MBean
+ */
+package com.awirtz.util;
+
+/**
+ * The JMX management interface of {@link RingBufferMetrics}.
+ * 
+ * @author Aaron Meriwether
+ */
+public interface RingBufferMetricsMBean {
+
+    /**
+     * Get the total number of bytes written.
+     * @return The number of bytes.
+     */
+    public long getBytesWritten();
+
+    /**
+     * Get the total number of bytes read.
+     * @return The number of bytes.
+     */
+    public long getBytesRead();
+
+    /**
+     * Get the number of writes which were cut short because the buffer was
+     * full.
+     * @return The number of writes.
+     */
+    public long getShortWrites();
+
+    /**
+     * Get the number of reads which found the buffer empty, or, for an
+     * all-or-nothing read, holding too little data.
+     * @return The number of reads.
+     */
+    public long getEmptyReads();
+
+    /**
+     * Get the number of transfers, in either direction, which wrapped around
+     * the end of the buffer.
+     * @return The number of transfers.
+     */
+    public long getWrappedTransfers();
+
+    /**
+     * Get the greatest number of bytes the buffer has held at once.
+     * @return The high-water mark in bytes.
+     */
+    public long getHighWaterMark();
+
+    /**
+     * Reset all of the metrics to zero.
+     */
+    public void reset();
+}
@@ -0,0 +1,67 @@
+/*
+ * Ring Buffer Output Stream
+ */
+package com.awirtz.util;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * A non-blocking OutputStream view of a {@link RingBuffer}.
+ * Each write is all-or-nothing: if the RingBuffer does not have room for the
+ * whole of a write, nothing is written and an IOException is thrown.  For a
+ * blocking stream between two threads, use {@link RingBufferPipe}.
+ * 
+ * @author Aaron Meriwether
+ */
+public class RingBufferOutputStream extends OutputStream {
+    private final RingBuffer ringBuffer;
+
+    /**
+     * Create a new RingBufferOutputStream.
+     * @param ringBuffer The RingBuffer to which data will be written.
+     */
+    public RingBufferOutputStream(RingBuffer ringBuffer) {
+        this.ringBuffer = ringBuffer;
+    }
+
+    /**
+     * Write a single byte.
+     * @param b The byte to be written, in the low eight bits.
+     * @throws IOException If the RingBuffer is full.
+     */
+    @Override public void write(int b) throws IOException {
+        if(!ringBuffer.put((byte)b)) {
+            throw new IOException("RingBuffer is full");
+        }
+    }
+
+    /**
+     * Write from a byte array.
+     * @param buffer A byte array from which the data will be copied.
+     * @param offset The offset in the byte array where the data begins.
+     * @param length The number of bytes to be written.
+     * @throws IOException If the RingBuffer does not have room for all of the
+     * data, in which case none of it is written.
+     */
+    @Override public void write(byte[] buffer, int offset, int length) throws IOException {
+        if(offset < 0 || length < 0 || length > buffer.length - offset) {
+            throw new IndexOutOfBoundsException();
+        }
+        // give an elastic buffer the chance to grow before the check
+        ringBuffer.ensureFree(length);
+        if(length > ringBuffer.getFreeSpace()) {
+            throw new IOException("RingBuffer has room for " + ringBuffer.getFreeSpace()
+                    + " of " + length + " bytes");
+        }
+        ringBuffer.write(buffer, offset, length);
+    }
+
+    /**
+     * Get the underlying RingBuffer.
+     * @return The underlying RingBuffer.
+     */
+    public RingBuffer getRingBuffer() {
+        return ringBuffer;
+    }
+}
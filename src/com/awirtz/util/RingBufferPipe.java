@@ -0,0 +1,255 @@
+/*
+ * Ring Buffer Pipe
+ */
+package com.awirtz.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+
+/**
+ * A pipe between one writing thread and one reading thread, built on an
+ * {@link SpscRingBuffer}.  This is a replacement for PipedInputStream and
+ * PipedOutputStream which takes no locks: the streams block using the
+ * pipe's {@link WaitStrategy} only when the ring buffer is full or empty.
+ *
+ * Closing the output stream makes the input stream report end-of-stream once
+ * the remaining data has been read.  Closing the input stream makes further
+ * writes fail.
+ *
+ * @author Aaron Meriwether
+ */
+public class RingBufferPipe {
+    private final SpscRingBuffer ringBuffer;
+    private final WaitStrategy waitStrategy;
+    private final InputStream inputStream = new Source();
+    private final OutputStream outputStream = new Sink();
+    private volatile boolean sourceClosed = false;
+    private volatile boolean sinkClosed = false;
+    private final WaitCondition readable = new WaitCondition() {
+        @Override public boolean isSatisfied() {
+            return ringBuffer.getLength() > 0 || sinkClosed || sourceClosed;
+        }
+    };
+    private final WaitCondition writable = new WaitCondition() {
+        @Override public boolean isSatisfied() {
+            return ringBuffer.getFreeSpace() > 0 || sinkClosed || sourceClosed;
+        }
+    };
+
+    /**
+     * Create a new RingBufferPipe.
+     * @param size The size in bytes of the pipe's ring buffer.
+     */
+    public RingBufferPipe(int size) {
+        this(size, new ParkingWaitStrategy());
+    }
+
+    /**
+     * Create a new RingBufferPipe which uses the specified strategy to wait
+     * for data or space.
+     * @param size The size in bytes of the pipe's ring buffer.
+     * @param waitStrategy The strategy used to wait for data or space.
+     */
+    public RingBufferPipe(int size, WaitStrategy waitStrategy) {
+        this.waitStrategy = waitStrategy;
+        ringBuffer = new SpscRingBuffer(size, waitStrategy);
+    }
+
+    /**
+     * Get the reading end of the pipe.  This must only be used by one thread.
+     * @return The input stream.
+     */
+    public InputStream getInputStream() {
+        return inputStream;
+    }
+
+    /**
+     * Get the writing end of the pipe.  This must only be used by one thread.
+     * @return The output stream.
+     */
+    public OutputStream getOutputStream() {
+        return outputStream;
+    }
+
+    /**
+     * Write everything passing through the pipe to an OutputStream until the
+     * writing end is closed.  This is equivalent to calling transferTo on the
+     * input stream, and must only be called by the reading thread.
+     * @param out The stream to which the data will be written.
+     * @return The number of bytes transferred.
+     * @throws IOException If the OutputStream fails, the reading end has been
+     * closed, or the thread is interrupted.
+     */
+    public long transferTo(OutputStream out) throws IOException {
+        return ((Source)inputStream).transferTo(out);
+    }
+
+    /**
+     * Get the underlying SpscRingBuffer.
+     * @return The underlying SpscRingBuffer.
+     */
+    public SpscRingBuffer getRingBuffer() {
+        return ringBuffer;
+    }
+
+    /**
+     * Wait for a condition, converting an interrupt into the exception
+     * expected of a stream.
+     * @param condition The condition to wait for.
+     * @throws InterruptedIOException If the thread is interrupted.
+     */
+    private void await(WaitCondition condition) throws InterruptedIOException {
+        try {
+            waitStrategy.await(condition, Long.MAX_VALUE);
+        } catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        }
+    }
+
+    /**
+     * The reading end of the pipe.
+     */
+    private class Source extends InputStream {
+
+        @Override public int read() throws IOException {
+            for(;;) {
+                // sample the writer's state before looking for data, so that
+                // nothing written before the close is missed
+                boolean closed = sinkClosed;
+                int b = ringBuffer.get();
+                if(b >= 0) {
+                    return b;
+                }
+                if(sourceClosed) {
+                    throw new IOException("Stream closed");
+                }
+                if(closed) {
+                    return -1;
+                }
+                await(readable);
+            }
+        }
+
+        @Override public int read(byte[] buffer, int offset, int length) throws IOException {
+            if(offset < 0 || length < 0 || length > buffer.length - offset) {
+                throw new IndexOutOfBoundsException();
+            }
+            if(length == 0) {
+                return 0;
+            }
+            for(;;) {
+                boolean closed = sinkClosed;
+                int toRead = ringBuffer.read(buffer, offset, length);
+                if(toRead > 0) {
+                    return toRead;
+                }
+                if(sourceClosed) {
+                    throw new IOException("Stream closed");
+                }
+                if(closed) {
+                    return -1;
+                }
+                await(readable);
+            }
+        }
+
+        @Override public int available() {
+            return ringBuffer.getLength();
+        }
+
+        /**
+         * Write everything passing through the pipe to an OutputStream until
+         * the writing end is closed.  The data is written directly from the
+         * ring buffer's byte array with no intermediate copy.
+         * @param out The stream to which the data will be written.
+         * @return The number of bytes transferred.
+         * @throws IOException If the OutputStream fails or the thread is
+         * interrupted.
+         */
+        public long transferTo(OutputStream out) throws IOException {
+            StreamTransfer transfer = new StreamTransfer(out);
+            long transferred = 0;
+            for(;;) {
+                boolean closed = sinkClosed;
+                int toRead;
+                try {
+                    toRead = ringBuffer.reader(transfer, Integer.MAX_VALUE);
+                } catch(StreamTransfer.Failure e) {
+                    throw e.unwrap();
+                }
+                transferred += toRead;
+                if(toRead == 0) {
+                    if(sourceClosed) {
+                        throw new IOException("Stream closed");
+                    }
+                    if(closed) {
+                        return transferred;
+                    }
+                    await(readable);
+                }
+            }
+        }
+
+        @Override public void close() {
+            sourceClosed = true;
+            // wake a writer waiting for space
+            waitStrategy.signal();
+        }
+    }
+
+    /**
+     * The writing end of the pipe.
+     */
+    private class Sink extends OutputStream {
+
+        @Override public void write(int b) throws IOException {
+            for(;;) {
+                checkOpen();
+                if(ringBuffer.put((byte)b)) {
+                    return;
+                }
+                await(writable);
+            }
+        }
+
+        @Override public void write(byte[] buffer, int offset, int length) throws IOException {
+            if(offset < 0 || length < 0 || length > buffer.length - offset) {
+                throw new IndexOutOfBoundsException();
+            }
+            for(;;) {
+                checkOpen();
+                int written = ringBuffer.write(buffer, offset, length);
+                offset += written;
+                length -= written;
+                if(length == 0) {
+                    return;
+                }
+                if(written == 0) {
+                    await(writable);
+                }
+            }
+        }
+
+        @Override public void close() {
+            sinkClosed = true;
+            // wake a reader waiting for data
+            waitStrategy.signal();
+        }
+
+        /**
+         * Make sure that both ends of the pipe are still open.
+         * @throws IOException If either end has been closed.
+         */
+        private void checkOpen() throws IOException {
+            if(sinkClosed) {
+                throw new IOException("Stream closed");
+            }
+            if(sourceClosed) {
+                throw new IOException("Pipe closed");
+            }
+        }
+    }
+}
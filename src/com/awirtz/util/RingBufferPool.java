@@ -0,0 +1,236 @@
+/*
+ * Ring Buffer Pool
+ */
+package com.awirtz.util;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+
+/**
+ * A thread-safe pool of RingBuffers carved from large pre-allocated slabs.
+ * Each RingBuffer is a region of a slab (see
+ * {@link RingBuffer#RingBuffer(byte[], int, int, int, int)}), so acquiring
+ * and releasing buffers allocates no byte arrays once the pool has warmed
+ * up.  Requests are rounded up to the smallest of a fixed set of size
+ * classes, and each size class carves its own slabs on demand.
+ *
+ * A {@link PooledRingBuffer} which becomes unreachable without having been
+ * released is detected when the garbage collector clears it: its region is
+ * returned to the pool and counted as a leak (see {@link #getLeakCount()}).
+ *
+ * @author Aaron Meriwether
+ */
+public class RingBufferPool {
+    private static final AtomicReferenceFieldUpdater<PooledRingBuffer, Lease> LEASE =
+            AtomicReferenceFieldUpdater.newUpdater(PooledRingBuffer.class, Lease.class, "lease");
+
+    private final int slabSize;
+    private final SizeClass[] sizeClasses;
+    private final ReferenceQueue<PooledRingBuffer> leakQueue = new ReferenceQueue<PooledRingBuffer>();
+    private final Set<Lease> leases = Collections.newSetFromMap(new ConcurrentHashMap<Lease, Boolean>());
+    private final AtomicInteger slabCount = new AtomicInteger();
+    private final AtomicLong leakCount = new AtomicLong();
+
+    /**
+     * Create a new RingBufferPool.  No slabs are allocated until the first
+     * buffer of each size class is acquired.
+     * @param slabSize The size in bytes of each slab.
+     * @param sizes The sizes in bytes of the buffers which will be handed
+     * out, each no greater than the slab size.
+     */
+    public RingBufferPool(int slabSize, int... sizes) {
+        if(sizes.length == 0) {
+            throw new IllegalArgumentException("No size classes");
+        }
+        int[] sorted = sizes.clone();
+        Arrays.sort(sorted);
+        if(sorted[0] <= 0 || sorted[sorted.length - 1] > slabSize) {
+            throw new IllegalArgumentException("Size classes " + Arrays.toString(sorted)
+                    + " must be positive and fit in a slab of " + slabSize + " bytes");
+        }
+        this.slabSize = slabSize;
+        sizeClasses = new SizeClass[sorted.length];
+        for(int i = 0; i < sorted.length; i++) {
+            sizeClasses[i] = new SizeClass(sorted[i]);
+        }
+    }
+
+    /**
+     * Acquire an empty RingBuffer from the pool.
+     * @param size The minimum size in bytes of the RingBuffer.
+     * @return A RingBuffer of the smallest size class which is at least the
+     * requested size.  It must be returned with
+     * {@link PooledRingBuffer#release()} once it is no longer needed.
+     * @throws IllegalArgumentException If the requested size is larger than
+     * the largest size class.
+     */
+    public PooledRingBuffer acquire(int size) {
+        expungeLeaks();
+        SizeClass sizeClass = sizeClassFor(size);
+        PooledRingBuffer buffer = sizeClass.free.poll();
+        if(buffer == null) {
+            buffer = carve(sizeClass);
+        }
+        Lease lease = new Lease(buffer, sizeClass, leakQueue);
+        leases.add(lease);
+        buffer.lease = lease;
+        return buffer;
+    }
+
+    /**
+     * Return a RingBuffer to its size class, discarding its contents and
+     * restoring its default byte order.
+     * @param buffer A RingBuffer acquired from this pool.
+     * @throws IllegalStateException If the RingBuffer has already been
+     * released.
+     */
+    void release(PooledRingBuffer buffer) {
+        // only one of several concurrent releases may take the lease
+        Lease lease = LEASE.getAndSet(buffer, null);
+        if(lease == null) {
+            throw new IllegalStateException("RingBuffer has already been released");
+        }
+        // a released buffer must not be reported as a leak
+        leases.remove(lease);
+        lease.clear();
+        buffer.clear();
+        buffer.setMetrics(null);
+        buffer.setByteOrder(ByteOrder.BIG_ENDIAN);
+        lease.sizeClass.free.add(buffer);
+    }
+
+    /**
+     * Find the smallest size class which will satisfy a request.
+     * @param size The requested size in bytes.
+     * @return The size class.
+     */
+    private SizeClass sizeClassFor(int size) {
+        for(SizeClass sizeClass : sizeClasses) {
+            if(sizeClass.size >= size) {
+                return sizeClass;
+            }
+        }
+        throw new IllegalArgumentException("No size class holds " + size + " bytes");
+    }
+
+    /**
+     * Allocate a new slab for a size class, keeping one of its buffers and
+     * adding the rest to the free list.
+     * @param sizeClass The size class which has run out of buffers.
+     * @return A buffer of the size class.
+     */
+    private PooledRingBuffer carve(SizeClass sizeClass) {
+        synchronized(sizeClass) {
+            // another thread may have carved a slab while this one waited
+            PooledRingBuffer buffer = sizeClass.free.poll();
+            if(buffer != null) {
+                return buffer;
+            }
+            byte[] slab = new byte[slabSize];
+            slabCount.incrementAndGet();
+            for(int offset = sizeClass.size; offset + sizeClass.size <= slabSize; offset += sizeClass.size) {
+                sizeClass.free.add(new PooledRingBuffer(this, slab, offset, sizeClass.size));
+            }
+            return new PooledRingBuffer(this, slab, 0, sizeClass.size);
+        }
+    }
+
+    /**
+     * Reclaim the regions of any buffers which were collected without being
+     * released.
+     */
+    private void expungeLeaks() {
+        Lease lease;
+        while((lease = (Lease)leakQueue.poll()) != null) {
+            if(leases.remove(lease)) {
+                leakCount.incrementAndGet();
+                lease.sizeClass.free.add(new PooledRingBuffer(this, lease.slab, lease.offset, lease.sizeClass.size));
+            }
+        }
+    }
+
+    /**
+     * Get the number of buffers which were garbage collected without being
+     * released.  Their storage has been returned to the pool.
+     * @return The number of leaked buffers detected so far.
+     */
+    public long getLeakCount() {
+        expungeLeaks();
+        return leakCount.get();
+    }
+
+    /**
+     * Get the number of buffers currently acquired and not yet released.
+     * @return The number of outstanding buffers.
+     */
+    public int getLeasedCount() {
+        expungeLeaks();
+        return leases.size();
+    }
+
+    /**
+     * Get the number of slabs allocated so far.
+     * @return The number of slabs.
+     */
+    public int getSlabCount() {
+        return slabCount.get();
+    }
+
+    /**
+     * Get the size of each slab.
+     * @return The slab size in bytes.
+     */
+    public int getSlabSize() {
+        return slabSize;
+    }
+
+    /**
+     * Get the sizes of the buffers handed out by the pool.
+     * @return The size classes in bytes, in ascending order.
+     */
+    public int[] getSizeClasses() {
+        int[] sizes = new int[sizeClasses.length];
+        for(int i = 0; i < sizes.length; i++) {
+            sizes[i] = sizeClasses[i].size;
+        }
+        return sizes;
+    }
+
+    /**
+     * The free list of one size class.
+     */
+    private static class SizeClass {
+        final int size;
+        final ConcurrentLinkedQueue<PooledRingBuffer> free = new ConcurrentLinkedQueue<PooledRingBuffer>();
+
+        SizeClass(int size) {
+            this.size = size;
+        }
+    }
+
+    /**
+     * The record of an acquired buffer, which remembers its region so that
+     * the region can be reclaimed if the buffer is collected unreleased.
+     */
+    static class Lease extends WeakReference<PooledRingBuffer> {
+        final SizeClass sizeClass;
+        final byte[] slab;
+        final int offset;
+
+        Lease(PooledRingBuffer buffer, SizeClass sizeClass, ReferenceQueue<PooledRingBuffer> queue) {
+            super(buffer, queue);
+            this.sizeClass = sizeClass;
+            slab = buffer.getByteArray();
+            offset = buffer.getOffset();
+        }
+    }
+}
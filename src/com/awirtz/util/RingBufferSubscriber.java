@@ -0,0 +1,45 @@
+/*
+ * Ring Buffer Subscriber
+ */
+package com.awirtz.util;
+
+import java.nio.ByteBuffer;
+
+/**
+ * The receiving side of a subscription to the readable segments of an
+ * {@link AsyncRingBuffer}.  This follows the shape of a reactive-streams
+ * subscriber: nothing is delivered until segments are requested through the
+ * {@link RingBufferSubscription}, and each requested unit of demand is
+ * satisfied by one contiguous segment of the buffer.
+ * 
+ * @author Aaron Meriwether
+ */
+public interface RingBufferSubscriber {
+
+    /**
+     * Invoked once, before anything else, with the subscription through which
+     * segments are requested.
+     * @param subscription The subscription.
+     */
+    public void onSubscribe(RingBufferSubscription subscription);
+
+    /**
+     * Invoked with a readable segment of the ring buffer.  The segment is a
+     * read-only view of the buffer's own byte array, so it is only valid
+     * until this method returns, after which its bytes are consumed.
+     * @param segment The segment.
+     */
+    public void onNext(ByteBuffer segment);
+
+    /**
+     * Invoked if the subscription fails.  Nothing further is delivered.
+     * @param error The cause of the failure.
+     */
+    public void onError(Throwable error);
+
+    /**
+     * Invoked once the buffer has been closed and all of its data has been
+     * delivered.  Nothing further is delivered.
+     */
+    public void onComplete();
+}
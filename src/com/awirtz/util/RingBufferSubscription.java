@@ -0,0 +1,26 @@
+/*
+ * Ring Buffer Subscription
+ */
+package com.awirtz.util;
+
+/**
+ * The link between an {@link AsyncRingBuffer} and its
+ * {@link RingBufferSubscriber}, through which the subscriber controls how
+ * much is delivered to it.
+ * 
+ * @author Aaron Meriwether
+ */
+public interface RingBufferSubscription {
+
+    /**
+     * Allow more segments to be delivered.
+     * @param n The number of additional segments, which must be positive.
+     */
+    public void request(long n);
+
+    /**
+     * Stop delivering segments.  Data which has not been delivered remains in
+     * the buffer.
+     */
+    public void cancel();
+}
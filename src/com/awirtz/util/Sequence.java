@@ -0,0 +1,36 @@
+/*
+ * Padded Sequence Counter
+ */
+package com.awirtz.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A free-running sequence counter padded out to fill a cache line, so that
+ * the producer and consumer counters of a concurrent ring buffer do not
+ * false-share.  Each instance is written by only one thread; the owner
+ * publishes with {@link #lazySet(long)} (release) and the other side reads
+ * with {@link #get()} (acquire).
+ * 
+ * @author Aaron Meriwether
+ */
+final class Sequence extends AtomicLong {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * The owner's most recently observed value of the opposing sequence.
+     * This is only ever touched by the owning thread.
+     */
+    long cached;
+
+    // pad out the rest of the cache line
+    long p1, p2, p3, p4, p5, p6;
+
+    /**
+     * Create a new Sequence with the specified initial value.
+     * @param initialValue The initial value of the sequence.
+     */
+    Sequence(long initialValue) {
+        super(initialValue);
+    }
+}
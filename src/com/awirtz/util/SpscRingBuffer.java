@@ -0,0 +1,525 @@
+/*
+ * Single-Producer/Single-Consumer Byte-Array Ring Buffer
+ */
+package com.awirtz.util;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A lock-free ring buffer implementation on top of a byte array which may be
+ * shared by exactly one producer thread and one consumer thread.
+ *
+ * The producer owns the head sequence and the consumer owns the tail
+ * sequence.  Both are free-running counters which are published with release
+ * semantics once the corresponding bytes have been copied, so neither side
+ * ever needs to take a lock.  The write methods must only be called from the
+ * producer thread and the read methods must only be called from the consumer
+ * thread; the remaining accessors may be called from any thread and return a
+ * momentary snapshot.
+ *
+ * The blocking writeFully and readFully methods wait for space or data
+ * using a {@link WaitStrategy}, which is {@link ParkingWaitStrategy} unless
+ * another is supplied at construction.
+ *
+ * @author Aaron Meriwether
+ */
+public class SpscRingBuffer {
+    private final byte[] byteArray;
+    private final int mask;
+    private final Sequence head = new Sequence(0);
+    private final Sequence tail = new Sequence(0);
+    private final WaitStrategy waitStrategy;
+    private volatile RingBufferMetrics metrics;
+    private final WaitCondition dataAvailable = new WaitCondition() {
+        @Override public boolean isSatisfied() {
+            return getLength() > 0;
+        }
+    };
+    private final WaitCondition spaceAvailable = new WaitCondition() {
+        @Override public boolean isSatisfied() {
+            return getFreeSpace() > 0;
+        }
+    };
+
+    /**
+     * Create a new SpscRingBuffer of the specified size.
+     * @param size The size in bytes of the SpscRingBuffer.
+     */
+    public SpscRingBuffer(int size) {
+        this(new byte[size]);
+    }
+
+    /**
+     * Create a new SpscRingBuffer of the specified size which uses the specified
+     * strategy for its blocking methods.
+     * @param size The size in bytes of the SpscRingBuffer.
+     * @param waitStrategy The strategy used to wait for data or space.
+     */
+    public SpscRingBuffer(int size, WaitStrategy waitStrategy) {
+        this(new byte[size], waitStrategy);
+    }
+
+    /**
+     * Turn an existing byte array into an SpscRingBuffer.
+     * @param buffer A byte array to be used as an SpscRingBuffer.
+     */
+    public SpscRingBuffer(byte[] buffer) {
+        this(buffer, new ParkingWaitStrategy());
+    }
+
+    /**
+     * Turn an existing byte array into an SpscRingBuffer which uses the specified
+     * strategy for its blocking methods.
+     * @param buffer A byte array to be used as an SpscRingBuffer.
+     * @param waitStrategy The strategy used to wait for data or space.
+     */
+    public SpscRingBuffer(byte[] buffer, WaitStrategy waitStrategy) {
+        byteArray = buffer;
+        this.waitStrategy = waitStrategy;
+        // power-of-two capacities index by masking
+        mask = Integer.bitCount(byteArray.length) == 1 ? byteArray.length - 1 : -1;
+    }
+
+    /**
+     * Write to the SpscRingBuffer from a byte array.
+     * If the write exceeds the free space in the SpscRingBuffer, only part of
+     * the data will be written.  This must only be called by the producer.
+     *
+     * @param buffer A byte array from which the data will be copied.
+     * @param offset The offset in the byte array where the data begins.
+     * @param length The number of bytes to be written.
+     * @return The number of bytes successfully written to the SpscRingBuffer.
+     * This may be less than the requested length if there is insufficient free
+     * space in the SpscRingBuffer, or zero if the SpscRingBuffer is full.
+     */
+    public int write(byte[] buffer, int offset, int length) {
+        long head = this.head.get();
+        int toWrite = claim(head, length);
+        int index = index(head);
+        int toEnd = byteArray.length - index;
+        if(toWrite > toEnd) {
+            // write from the head to the end
+            System.arraycopy(buffer, offset, byteArray, index, toEnd);
+            // write the remainder from the beginning
+            System.arraycopy(buffer, offset + toEnd, byteArray, 0, toWrite - toEnd);
+        } else {
+            // write the whole thing at once
+            System.arraycopy(buffer, offset, byteArray, index, toWrite);
+        }
+        // publish the written bytes to the consumer
+        if(toWrite > 0) {
+            this.head.lazySet(head + toWrite);
+            waitStrategy.signal();
+        }
+        RingBufferMetrics metrics = this.metrics;
+        if(metrics != null) {
+            metrics.recordWrite(toWrite, toWrite < length, toWrite > toEnd, head + toWrite - this.tail.get());
+        }
+        return toWrite;
+    }
+
+    /**
+     * Perform a write operation via callbacks on a supplied object.
+     * This is the concurrent equivalent of
+     * {@link RingBuffer#writer(RingBufferWriter, int)}; the written bytes are
+     * not visible to the consumer until the callbacks have returned.  This
+     * must only be called by the producer.
+     *
+     * @param writer An object implementing the RingBufferWriter interface.
+     * @param length The number of bytes to be written.
+     * @return The number of bytes successfully written to the SpscRingBuffer.
+     * This may be less than the requested length if there is insufficient free
+     * space in the SpscRingBuffer, or zero if the SpscRingBuffer is full.
+     */
+    public int writer(RingBufferWriter writer, int length) {
+        long head = this.head.get();
+        int toWrite = claim(head, length);
+        int index = index(head);
+        int toEnd = byteArray.length - index;
+        if(toWrite > toEnd) {
+            // write from the head to the end
+            writer.write(byteArray, index, toEnd);
+            // write the remainder from the beginning
+            writer.write(byteArray, 0, toWrite - toEnd);
+        } else {
+            // write the whole thing at once
+            writer.write(byteArray, index, toWrite);
+        }
+        // publish the written bytes to the consumer
+        if(toWrite > 0) {
+            this.head.lazySet(head + toWrite);
+            waitStrategy.signal();
+        }
+        RingBufferMetrics metrics = this.metrics;
+        if(metrics != null) {
+            metrics.recordWrite(toWrite, toWrite < length, toWrite > toEnd, head + toWrite - this.tail.get());
+        }
+        return toWrite;
+    }
+
+    /**
+     * Read from the SpscRingBuffer into a byte array.
+     * This must only be called by the consumer.
+     *
+     * @param buffer A byte array in which the read data will be placed.
+     * @param offset The offset in the byte array where the read data should be placed.
+     * @param length The number of bytes to be read.
+     * @return The number of bytes successfully read from the SpscRingBuffer.
+     * This may be less than the requested length if there were fewer bytes in
+     * the buffer, or zero if the buffer was empty.
+     */
+    public int read(byte[] buffer, int offset, int length) {
+        long tail = this.tail.get();
+        int toRead = available(tail, length);
+        int index = index(tail);
+        int toEnd = byteArray.length - index;
+        if(toRead > toEnd) {
+            // read from the tail to the end
+            System.arraycopy(byteArray, index, buffer, offset, toEnd);
+            // read the requested remainder from the beginning
+            System.arraycopy(byteArray, 0, buffer, offset + toEnd, toRead - toEnd);
+        } else {
+            // read the whole requested thing at once
+            System.arraycopy(byteArray, index, buffer, offset, toRead);
+        }
+        // release the read space back to the producer
+        if(toRead > 0) {
+            this.tail.lazySet(tail + toRead);
+            waitStrategy.signal();
+        }
+        RingBufferMetrics metrics = this.metrics;
+        if(metrics != null) {
+            metrics.recordRead(toRead, toRead == 0 && length > 0, toRead > toEnd);
+        }
+        return toRead;
+    }
+
+    /**
+     * Perform a read operation via callbacks on a supplied object.
+     * This is the concurrent equivalent of
+     * {@link RingBuffer#reader(RingBufferReader, int)}; the read space is not
+     * released to the producer until the callbacks have returned.  This must
+     * only be called by the consumer.
+     *
+     * @param reader An object implementing the RingBufferReader interface.
+     * @param length The number of bytes to be read.
+     * @return The number of bytes successfully read from the SpscRingBuffer.
+     * This may be less than the requested length if there were fewer bytes in
+     * the buffer, or zero if the buffer was empty.
+     */
+    public int reader(RingBufferReader reader, int length) {
+        long tail = this.tail.get();
+        int toRead = available(tail, length);
+        int index = index(tail);
+        int toEnd = byteArray.length - index;
+        if(toRead > toEnd) {
+            // read from the tail to the end
+            reader.read(byteArray, index, toEnd);
+            // read the requested remainder from the beginning
+            reader.read(byteArray, 0, toRead - toEnd);
+        } else {
+            // read the whole requested thing at once
+            reader.read(byteArray, index, toRead);
+        }
+        // release the read space back to the producer
+        if(toRead > 0) {
+            this.tail.lazySet(tail + toRead);
+            waitStrategy.signal();
+        }
+        RingBufferMetrics metrics = this.metrics;
+        if(metrics != null) {
+            metrics.recordRead(toRead, toRead == 0 && length > 0, toRead > toEnd);
+        }
+        return toRead;
+    }
+
+    /**
+     * Deliver all of the data available in the SpscRingBuffer, up to a
+     * limit, to a reader in a single batch.
+     * The published head is read exactly once, the reader is invoked zero,
+     * one, or two times, and the tail is advanced once.  If the reader is a
+     * {@link RingBufferBatchReader} and the batch was not empty, its
+     * end-of-batch hook is invoked once after the space has been released
+     * back to the producer.  This must only be called by the consumer.
+     *
+     * @param reader An object implementing the RingBufferReader interface.
+     * @param maxBytes The maximum number of bytes to be delivered.
+     * @return The number of bytes delivered, or zero if the buffer was empty.
+     */
+    public int drainTo(RingBufferReader reader, int maxBytes) {
+        long tail = this.tail.get();
+        // take a single snapshot of everything published so far
+        this.tail.cached = this.head.get();
+        int toRead = (int)Math.min(maxBytes, this.tail.cached - tail);
+        int index = index(tail);
+        int toEnd = byteArray.length - index;
+        if(toRead > toEnd) {
+            // read from the tail to the end
+            reader.read(byteArray, index, toEnd);
+            // read the requested remainder from the beginning
+            reader.read(byteArray, 0, toRead - toEnd);
+        } else {
+            // read the whole requested thing at once
+            reader.read(byteArray, index, toRead);
+        }
+        if(toRead > 0) {
+            // release the read space back to the producer
+            this.tail.lazySet(tail + toRead);
+            waitStrategy.signal();
+            if(reader instanceof RingBufferBatchReader) {
+                ((RingBufferBatchReader)reader).endOfBatch(toRead);
+            }
+        }
+        RingBufferMetrics metrics = this.metrics;
+        if(metrics != null) {
+            metrics.recordRead(toRead, toRead == 0 && maxBytes > 0, toRead > toEnd);
+        }
+        return toRead;
+    }
+
+    /**
+     * Write a single byte to the SpscRingBuffer.
+     * This must only be called by the producer.
+     *
+     * @param b The byte to be written.
+     * @return True if the byte was written, or false if the SpscRingBuffer is
+     * full.
+     */
+    public boolean put(byte b) {
+        long head = this.head.get();
+        RingBufferMetrics metrics = this.metrics;
+        if(claim(head, 1) == 0) {
+            if(metrics != null) {
+                metrics.recordWrite(0, true, false, byteArray.length);
+            }
+            return false;
+        }
+        byteArray[index(head)] = b;
+        this.head.lazySet(head + 1);
+        waitStrategy.signal();
+        if(metrics != null) {
+            metrics.recordWrite(1, false, false, head + 1 - this.tail.get());
+        }
+        return true;
+    }
+
+    /**
+     * Read a single byte from the SpscRingBuffer.
+     * This must only be called by the consumer.
+     *
+     * @return The byte read, as an int in the range 0 to 255, or -1 if the
+     * SpscRingBuffer is empty.
+     */
+    public int get() {
+        long tail = this.tail.get();
+        RingBufferMetrics metrics = this.metrics;
+        if(available(tail, 1) == 0) {
+            if(metrics != null) {
+                metrics.recordRead(0, true, false);
+            }
+            return -1;
+        }
+        int b = byteArray[index(tail)] & 0xff;
+        this.tail.lazySet(tail + 1);
+        waitStrategy.signal();
+        if(metrics != null) {
+            metrics.recordRead(1, false, false);
+        }
+        return b;
+    }
+
+    /**
+     * Write the whole of a byte array region to the SpscRingBuffer, waiting for
+     * free space as necessary.  This must only be called by the producer.
+     *
+     * @param buffer A byte array from which the data will be copied.
+     * @param offset The offset in the byte array where the data begins.
+     * @param length The number of bytes to be written.
+     * @throws InterruptedException If the thread is interrupted while waiting.
+     */
+    public void writeFully(byte[] buffer, int offset, int length)
+            throws InterruptedException {
+        writeFully(buffer, offset, length, Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Write the whole of a byte array region to the SpscRingBuffer, waiting for
+     * free space as necessary until the timeout elapses.  This must only be
+     * called by the producer.
+     *
+     * @param buffer A byte array from which the data will be copied.
+     * @param offset The offset in the byte array where the data begins.
+     * @param length The number of bytes to be written.
+     * @param timeout The maximum time to wait.
+     * @param unit The unit of the timeout.
+     * @return The number of bytes written, which is less than the requested
+     * length only if the timeout elapsed.
+     * @throws InterruptedException If the thread is interrupted while waiting.
+     */
+    public int writeFully(byte[] buffer, int offset, int length, long timeout, TimeUnit unit)
+            throws InterruptedException {
+        long nanos = unit.toNanos(timeout);
+        long start = System.nanoTime();
+        int written = write(buffer, offset, length);
+        while(written < length) {
+            long remaining = nanos - (System.nanoTime() - start);
+            if(remaining <= 0 || !waitStrategy.await(spaceAvailable, remaining)) {
+                break;
+            }
+            written += write(buffer, offset + written, length - written);
+        }
+        return written;
+    }
+
+    /**
+     * Fill the whole of a byte array region from the SpscRingBuffer, waiting for
+     * data as necessary.  This must only be called by the consumer.
+     *
+     * @param buffer A byte array in which the read data will be placed.
+     * @param offset The offset in the byte array where the read data should be placed.
+     * @param length The number of bytes to be read.
+     * @throws InterruptedException If the thread is interrupted while waiting.
+     */
+    public void readFully(byte[] buffer, int offset, int length)
+            throws InterruptedException {
+        readFully(buffer, offset, length, Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Fill the whole of a byte array region from the SpscRingBuffer, waiting for
+     * data as necessary until the timeout elapses.  This must only be called
+     * by the consumer.
+     *
+     * @param buffer A byte array in which the read data will be placed.
+     * @param offset The offset in the byte array where the read data should be placed.
+     * @param length The number of bytes to be read.
+     * @param timeout The maximum time to wait.
+     * @param unit The unit of the timeout.
+     * @return The number of bytes read, which is less than the requested
+     * length only if the timeout elapsed.
+     * @throws InterruptedException If the thread is interrupted while waiting.
+     */
+    public int readFully(byte[] buffer, int offset, int length, long timeout, TimeUnit unit)
+            throws InterruptedException {
+        long nanos = unit.toNanos(timeout);
+        long start = System.nanoTime();
+        int read = read(buffer, offset, length);
+        while(read < length) {
+            long remaining = nanos - (System.nanoTime() - start);
+            if(remaining <= 0 || !waitStrategy.await(dataAvailable, remaining)) {
+                break;
+            }
+            read += read(buffer, offset + read, length - read);
+        }
+        return read;
+    }
+
+    /**
+     * Work out how much of a write request will fit, consulting the
+     * consumer's published tail only when the cached copy is insufficient.
+     * @param head The producer's current head sequence.
+     * @param length The number of bytes requested.
+     * @return The number of bytes which may be written.
+     */
+    private int claim(long head, int length) {
+        long free = byteArray.length - (head - this.head.cached);
+        if(free < length) {
+            this.head.cached = this.tail.get();
+            free = byteArray.length - (head - this.head.cached);
+        }
+        return (int)Math.min(length, free);
+    }
+
+    /**
+     * Work out how much of a read request can be satisfied, consulting the
+     * producer's published head only when the cached copy is insufficient.
+     * @param tail The consumer's current tail sequence.
+     * @param length The number of bytes requested.
+     * @return The number of bytes which may be read.
+     */
+    private int available(long tail, int length) {
+        long used = this.tail.cached - tail;
+        if(used < length) {
+            this.tail.cached = this.head.get();
+            used = this.tail.cached - tail;
+        }
+        return (int)Math.min(length, used);
+    }
+
+    /**
+     * Map a free-running sequence onto an index in the byte array.  When the
+     * capacity is a power of two this is a mask; otherwise it falls back to a
+     * modulo.
+     * @param sequence A head or tail sequence.
+     * @return The corresponding index.
+     */
+    private int index(long sequence) {
+        return mask >= 0 ? (int)sequence & mask : (int)(sequence % byteArray.length);
+    }
+
+    /**
+     * Attach metrics to the SpscRingBuffer, or detach them.
+     * While attached, every transfer is recorded in the metrics; while
+     * detached, the only cost is a null check.  This may be called from any
+     * thread.
+     * @param metrics The metrics to be updated, or null for none.
+     */
+    public void setMetrics(RingBufferMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Get the metrics attached to the SpscRingBuffer.
+     * @return The attached metrics, or null if there are none.
+     */
+    public RingBufferMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Get the length of the data contained in the SpscRingBuffer.
+     * @return The length of the data in bytes.
+     */
+    public int getLength() {
+        // read the tail first so that the result is never negative
+        long tail = this.tail.get();
+        return (int)Math.min(head.get() - tail, byteArray.length);
+    }
+
+    /**
+     * Get the maximum capacity of the SpscRingBuffer.
+     * @return The maximum capacity in bytes.
+     */
+    public int getMaxLength() {
+        return byteArray.length;
+    }
+
+    /**
+     * Get the size of the unused space in the SpscRingBuffer.
+     * @return The unused capacity in bytes.
+     */
+    public int getFreeSpace() {
+        return byteArray.length - getLength();
+    }
+
+    /**
+     * Get the underlying byte array.
+     * @return The underlying byte array.
+     */
+    public byte[] getByteArray() {
+        return byteArray;
+    }
+
+    /**
+     * Get the tail pointer for the underlying byte array.
+     * @return The tail pointer.
+     */
+    public int getTail() {
+        return index(tail.get());
+    }
+
+    @Override public String toString() {
+        return Arrays.toString(byteArray) + ", " + getTail() + ", " + getLength();
+    }
+}
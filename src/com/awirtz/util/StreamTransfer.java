@@ -0,0 +1,57 @@
+/*
+ * Ring Buffer to Output Stream Transfer
+ */
+package com.awirtz.util;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * A RingBufferReader which writes each segment it is given straight to an
+ * OutputStream, so that a ring buffer can be drained into a stream without an
+ * intermediate copy.
+ * RingBufferReader callbacks cannot throw checked exceptions, so an
+ * IOException from the stream is tunnelled out of the read operation as a
+ * {@link Failure}, which the caller unwraps.  Because the exception escapes
+ * the callback, the ring buffer's tail is not advanced.
+ * 
+ * @author Aaron Meriwether
+ */
+final class StreamTransfer implements RingBufferReader {
+    private final OutputStream out;
+
+    /**
+     * Create a new StreamTransfer.
+     * @param out The stream to which segments will be written.
+     */
+    StreamTransfer(OutputStream out) {
+        this.out = out;
+    }
+
+    @Override public void read(byte[] buffer, int offset, int length) {
+        try {
+            out.write(buffer, offset, length);
+        } catch(IOException e) {
+            throw new Failure(e);
+        }
+    }
+
+    /**
+     * An IOException tunnelled out of a RingBufferReader callback.
+     */
+    static final class Failure extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        Failure(IOException cause) {
+            super(cause);
+        }
+
+        /**
+         * Get the original exception.
+         * @return The IOException thrown by the stream.
+         */
+        IOException unwrap() {
+            return (IOException)getCause();
+        }
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ * Striped Counter
+ */
+package com.awirtz.util;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A counter spread over several cache-line padded cells, so that threads
+ * updating it concurrently rarely touch the same cell.  Updates go to a cell
+ * chosen by the updating thread's id and reads sum all of the cells, which
+ * makes updates cheap and reads comparatively expensive.
+ * 
+ * @author Aaron Meriwether
+ */
+final class StripedCounter {
+    // longs per cache line
+    private static final int PADDING = 8;
+    private static final int STRIPES = stripes();
+
+    private final AtomicLongArray cells = new AtomicLongArray(STRIPES * PADDING);
+
+    /**
+     * Add to the counter.
+     * @param delta The amount to add.
+     */
+    void add(long delta) {
+        int stripe = (int)Thread.currentThread().getId() & (STRIPES - 1);
+        cells.addAndGet(stripe * PADDING, delta);
+    }
+
+    /**
+     * Add one to the counter.
+     */
+    void increment() {
+        add(1);
+    }
+
+    /**
+     * Get the value of the counter.  This is not an atomic snapshot if
+     * updates are made concurrently.
+     * @return The sum of all of the cells.
+     */
+    long sum() {
+        long sum = 0;
+        for(int i = 0; i < STRIPES; i++) {
+            sum += cells.get(i * PADDING);
+        }
+        return sum;
+    }
+
+    /**
+     * Reset the counter to zero.
+     */
+    void reset() {
+        for(int i = 0; i < STRIPES; i++) {
+            cells.set(i * PADDING, 0);
+        }
+    }
+
+    /**
+     * Choose the number of stripes: the number of processors rounded up to a
+     * power of two.
+     * @return The number of stripes.
+     */
+    private static int stripes() {
+        int processors = Runtime.getRuntime().availableProcessors();
+        return Integer.highestOneBit(Math.max(processors * 2 - 1, 1));
+    }
+}
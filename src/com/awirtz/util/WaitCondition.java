@@ -0,0 +1,21 @@
+/*
+ * Wait Condition
+ */
+package com.awirtz.util;
+
+/**
+ * An interface describing the condition a {@link WaitStrategy} waits for.
+ * 
+ * @author Aaron Meriwether
+ */
+public interface WaitCondition {
+
+    /**
+     * Test whether the waiting thread can make progress.
+     * This is invoked repeatedly by the {@link WaitStrategy} and must not
+     * block.
+     * 
+     * @return True if the condition has been met.
+     */
+    public boolean isSatisfied();
+}
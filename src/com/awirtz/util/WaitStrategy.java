@@ -0,0 +1,39 @@
+/*
+ * Wait Strategy
+ */
+package com.awirtz.util;
+
+/**
+ * An interface describing how a thread waits for data or space in a
+ * concurrent ring buffer.  This is used by the blocking methods of
+ * {@link SpscRingBuffer} and {@link MpscRingBuffer}, which call
+ * {@link #signal()} after every change so that implementations which put
+ * threads to sleep know when to wake them.
+ * 
+ * Implementations trade CPU for latency:
+ * {@link BusySpinWaitStrategy} and {@link YieldingWaitStrategy} never
+ * sleep, while {@link ParkingWaitStrategy} and {@link BlockingWaitStrategy}
+ * release the CPU until they are signalled.
+ * 
+ * @author Aaron Meriwether
+ */
+public interface WaitStrategy {
+
+    /**
+     * Wait until a condition is satisfied or a timeout elapses.
+     * 
+     * @param condition The condition to wait for.
+     * @param nanos The maximum time to wait, in nanoseconds.
+     * @return True if the condition was satisfied, or false if the timeout
+     * elapsed first.
+     * @throws InterruptedException If the waiting thread is interrupted.
+     */
+    public boolean await(WaitCondition condition, long nanos) throws InterruptedException;
+
+    /**
+     * Notify any waiting threads that a condition they are waiting for may
+     * now be satisfied.  This is invoked on every change, so it must be cheap
+     * when no thread is waiting.
+     */
+    public void signal();
+}
@@ -0,0 +1,39 @@
+/*
+ * Yielding Wait Strategy
+ */
+package com.awirtz.util;
+
+/**
+ * A {@link WaitStrategy} which spins on the condition for a while and then
+ * yields the CPU between checks.  This keeps latency low while letting other
+ * runnable threads make progress when cores are oversubscribed.
+ * 
+ * @author Aaron Meriwether
+ */
+public class YieldingWaitStrategy implements WaitStrategy {
+    private static final int SPIN_TRIES = 100;
+
+    @Override public boolean await(WaitCondition condition, long nanos)
+            throws InterruptedException {
+        long start = System.nanoTime();
+        int spins = 0;
+        while(!condition.isSatisfied()) {
+            if(Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+            if(System.nanoTime() - start >= nanos) {
+                return false;
+            }
+            if(spins < SPIN_TRIES) {
+                spins++;
+            } else {
+                Thread.yield();
+            }
+        }
+        return true;
+    }
+
+    @Override public void signal() {
+        // yielding threads notice changes by themselves
+    }
+}
@@ -0,0 +1,228 @@
+package com.awirtz.util;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+public class AsyncRingBufferTest {
+
+    public AsyncRingBufferTest() {}
+
+    /**
+     * A subscriber which records what it is sent.
+     */
+    private static class Recorder implements RingBufferSubscriber {
+        RingBufferSubscription subscription;
+        List<byte[]> segments = new ArrayList<byte[]>();
+        Throwable error;
+        boolean complete;
+
+        @Override public void onSubscribe(RingBufferSubscription subscription) {
+            this.subscription = subscription;
+        }
+
+        @Override public void onNext(ByteBuffer segment) {
+            byte[] bytes = new byte[segment.remaining()];
+            segment.get(bytes);
+            segments.add(bytes);
+        }
+
+        @Override public void onError(Throwable error) {
+            this.error = error;
+        }
+
+        @Override public void onComplete() {
+            complete = true;
+        }
+    }
+
+    @Test public void testWriteAsync() throws InterruptedException, ExecutionException {
+        AsyncRingBuffer instance = new AsyncRingBuffer(4);
+        byte[] data = {1, 2, 3, 4, 5, 6};
+        Future<Integer> result = instance.writeAsync(data, 0, 6);
+        assertFalse("writeAsync(byte[],int,int)  [waiting for space]", result.isDone());
+        assertEquals("writeAsync(byte[],int,int)  [partly written]", 4, instance.getRingBuffer().getLength());
+        assertEquals("getPendingWrites()", 1, instance.getPendingWrites());
+        byte[] buffer = new byte[6];
+        assertEquals("read(byte[],int,int)", 3, instance.read(buffer, 0, 3));
+        assertTrue("writeAsync(byte[],int,int)  [completed by read]", result.isDone());
+        assertEquals("writeAsync(byte[],int,int)", Integer.valueOf(6), result.get());
+        assertEquals("read(byte[],int,int)  [remainder]", 3, instance.read(buffer, 3, 3));
+        assertArrayEquals("writeAsync(byte[],int,int)  [in order]", data, buffer);
+        Future<Integer> immediate = instance.writeAsync(data, 0, 2);
+        assertTrue("writeAsync(byte[],int,int)  [fits]", immediate.isDone());
+    }
+
+    @Test public void testReadAsync() throws InterruptedException, ExecutionException {
+        AsyncRingBuffer instance = new AsyncRingBuffer(8);
+        byte[] buffer = new byte[4];
+        Future<Integer> result = instance.readAsync(buffer, 0, 4);
+        assertFalse("readAsync(byte[],int,int)  [waiting for data]", result.isDone());
+        assertEquals("getPendingReads()", 1, instance.getPendingReads());
+        assertEquals("write(byte[],int,int)", 2, instance.write(new byte[] {7, 8}, 0, 2));
+        assertEquals("readAsync(byte[],int,int)  [partial]", Integer.valueOf(2), result.get());
+        assertEquals("readAsync(byte[],int,int)", 7, buffer[0]);
+        assertEquals("readAsync(byte[],int,int)", 8, buffer[1]);
+        Future<Integer> cancelled = instance.readAsync(buffer, 0, 4);
+        cancelled.cancel(false);
+        Future<Integer> next = instance.readAsync(buffer, 0, 4);
+        instance.write(new byte[] {9}, 0, 1);
+        assertEquals("readAsync(byte[],int,int)  [after cancelled]", Integer.valueOf(1), next.get());
+        assertEquals("readAsync(byte[],int,int)  [after cancelled]", 9, buffer[0]);
+    }
+
+    @Test public void testAsyncChain() throws InterruptedException, ExecutionException {
+        AsyncRingBuffer instance = new AsyncRingBuffer(3);
+        byte[] buffer = new byte[2];
+        Future<Integer> read = instance.readAsync(buffer, 0, 2);
+        Future<Integer> write = instance.writeAsync(new byte[] {1, 2, 3, 4, 5}, 0, 5);
+        // the read frees space, which lets the rest of the write through
+        assertEquals("readAsync(byte[],int,int)", Integer.valueOf(2), read.get());
+        assertEquals("writeAsync(byte[],int,int)", Integer.valueOf(5), write.get());
+        assertEquals("writeAsync(byte[],int,int)  [remaining]", 3, instance.getRingBuffer().getLength());
+    }
+
+    @Test public void testCallback() {
+        AsyncRingBuffer instance = new AsyncRingBuffer(4);
+        final List<String> events = new ArrayList<String>();
+        RingBufferCallback callback = new RingBufferCallback() {
+            @Override public void completed(int result) {
+                events.add("completed " + result);
+            }
+            @Override public void failed(Throwable error) {
+                events.add("failed " + error.getClass().getSimpleName());
+            }
+        };
+        byte[] buffer = new byte[4];
+        instance.readAsync(buffer, 0, 4, callback);
+        assertEquals("readAsync(byte[],int,int,RingBufferCallback)  [waiting]", 0, events.size());
+        instance.writeAsync(new byte[] {1, 2, 3, 4, 5, 6}, 0, 6, callback);
+        // the read takes the first four bytes, which lets the rest of the write through
+        assertEquals("[completed 4, completed 6]", events.toString());
+        instance.readAsync(buffer, 0, 4, callback);
+        assertEquals("readAsync(byte[],int,int,RingBufferCallback)  [immediate]", "completed 2", events.get(2));
+        instance.readAsync(buffer, 0, 4, callback).cancel(false);
+        assertEquals("readAsync(byte[],int,int,RingBufferCallback)  [cancelled]", "failed CancellationException", events.get(3));
+        instance.close();
+        instance.writeAsync(buffer, 0, 1, callback);
+        assertEquals("writeAsync(byte[],int,int,RingBufferCallback)  [closed]", "failed IllegalStateException", events.get(4));
+    }
+
+    @Test public void testClose() throws InterruptedException, ExecutionException {
+        AsyncRingBuffer instance = new AsyncRingBuffer(4);
+        byte[] buffer = new byte[4];
+        instance.write(new byte[] {1}, 0, 1);
+        instance.close();
+        assertTrue("isClosed()", instance.isClosed());
+        Future<Integer> read = instance.readAsync(buffer, 0, 4);
+        assertEquals("readAsync(byte[],int,int)  [remaining data]", Integer.valueOf(1), read.get());
+        assertEquals("readAsync(byte[],int,int)  [end-of-stream]", Integer.valueOf(-1), instance.readAsync(buffer, 0, 4).get());
+        boolean failed = false;
+        try {
+            instance.writeAsync(buffer, 0, 1).get();
+        } catch(ExecutionException e) {
+            failed = e.getCause() instanceof IllegalStateException;
+        }
+        assertTrue("writeAsync(byte[],int,int)  [closed]", failed);
+    }
+
+    @Test public void testSubscribe() {
+        AsyncRingBuffer instance = new AsyncRingBuffer(8);
+        Recorder recorder = new Recorder();
+        instance.subscribe(recorder);
+        instance.write(new byte[] {1, 2, 3, 4, 5, 6}, 0, 6);
+        assertEquals("subscribe(RingBufferSubscriber)  [no demand]", 0, recorder.segments.size());
+        recorder.subscription.request(1);
+        assertEquals("request(long)", 1, recorder.segments.size());
+        assertArrayEquals("onNext(ByteBuffer)", new byte[] {1, 2, 3, 4, 5, 6}, recorder.segments.get(0));
+        assertEquals("onNext(ByteBuffer)  [consumed]", 0, instance.getRingBuffer().getLength());
+        // this wraps, and so is delivered as two segments
+        instance.write(new byte[] {7, 8, 9, 10}, 0, 4);
+        recorder.subscription.request(1);
+        assertEquals("request(long)  [one segment per request]", 2, recorder.segments.size());
+        assertArrayEquals("onNext(ByteBuffer)  [to the end]", new byte[] {7, 8}, recorder.segments.get(1));
+        assertEquals("request(long)  [rest left]", 2, instance.getRingBuffer().getLength());
+        recorder.subscription.request(Long.MAX_VALUE);
+        assertArrayEquals("onNext(ByteBuffer)  [from the beginning]", new byte[] {9, 10}, recorder.segments.get(2));
+        instance.write(new byte[] {11}, 0, 1);
+        assertEquals("write(byte[],int,int)  [unbounded demand]", 4, recorder.segments.size());
+        instance.close();
+        assertTrue("onComplete()", recorder.complete);
+    }
+
+    @Test public void testSubscribeErrors() {
+        AsyncRingBuffer instance = new AsyncRingBuffer(8);
+        Recorder first = new Recorder();
+        Recorder second = new Recorder();
+        instance.subscribe(first);
+        instance.subscribe(second);
+        assertTrue("subscribe(RingBufferSubscriber)  [second subscriber]", second.error instanceof IllegalStateException);
+        assertTrue("subscribe(RingBufferSubscriber)  [onSubscribe before onError]", second.subscription != null);
+        second.subscription.request(1);
+        first.subscription.request(0);
+        assertTrue("request(long)  [non-positive]", first.error instanceof IllegalArgumentException);
+        Recorder third = new Recorder();
+        instance.subscribe(third);
+        assertTrue("subscribe(RingBufferSubscriber)  [after cancel]", third.error == null);
+        instance.write(new byte[] {1}, 0, 1);
+        third.subscription.cancel();
+        third.subscription.request(1);
+        assertEquals("cancel()", 0, third.segments.size());
+        assertEquals("cancel()  [data left]", 1, instance.getRingBuffer().getLength());
+    }
+
+    @Test public void testSubscriberThrows() {
+        AsyncRingBuffer instance = new AsyncRingBuffer(8);
+        Recorder recorder = new Recorder() {
+            @Override public void onNext(ByteBuffer segment) {
+                throw new IllegalStateException();
+            }
+        };
+        instance.subscribe(recorder);
+        recorder.subscription.request(1);
+        assertEquals("write(byte[],int,int)  [not disturbed]", 2, instance.write(new byte[] {1, 2}, 0, 2));
+        assertTrue("onNext(ByteBuffer)  [throws]", recorder.error instanceof IllegalStateException);
+        assertEquals("onNext(ByteBuffer)  [segment left]", 2, instance.getRingBuffer().getLength());
+        Recorder next = new Recorder();
+        instance.subscribe(next);
+        assertTrue("subscribe(RingBufferSubscriber)  [after failure]", next.error == null);
+        next.subscription.request(1);
+        assertArrayEquals("onNext(ByteBuffer)  [after failure]", new byte[] {1, 2}, next.segments.get(0));
+    }
+
+    @Test public void testConcurrent() throws InterruptedException, ExecutionException {
+        final AsyncRingBuffer instance = new AsyncRingBuffer(16);
+        final byte[] data = new byte[5000];
+        for(int i = 0; i < data.length; i++) {
+            data[i] = (byte)(i * 31);
+        }
+        Thread writer = new Thread() {
+            @Override public void run() {
+                try {
+                    for(int i = 0; i < data.length; i += 7) {
+                        instance.writeAsync(data, i, Math.min(7, data.length - i)).get();
+                    }
+                } catch(Exception e) {
+                    throw new RuntimeException(e);
+                }
+                instance.close();
+            }
+        };
+        writer.start();
+        byte[] received = new byte[data.length];
+        int total = 0;
+        while(total < received.length) {
+            total += instance.readAsync(received, total, Math.min(5, received.length - total)).get();
+        }
+        assertEquals("readAsync(byte[],int,int)  [end-of-stream]", Integer.valueOf(-1), instance.readAsync(new byte[1], 0, 1).get());
+        writer.join();
+        assertArrayEquals("readAsync(byte[],int,int)  [in order]", data, received);
+    }
+}
@@ -0,0 +1,170 @@
+package com.awirtz.util;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Pipe;
+import java.util.Arrays;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+public class DirectRingBufferTest {
+
+    public DirectRingBufferTest() {}
+
+    private static ByteBuffer direct(byte[] content) {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(content.length);
+        buffer.put(content).flip();
+        return buffer;
+    }
+
+    @Test public void testDirectRingBuffer() {
+        assertEquals("new DirectRingBuffer(int)",
+                "[0, 0, 0], 0, 0", new DirectRingBuffer(3).toString());
+        assertTrue("new DirectRingBuffer(int) [direct]",
+                new DirectRingBuffer(3).getByteBuffer().isDirect());
+        assertEquals("new DirectRingBuffer(ByteBuffer)",
+                "[1, 2, 3], 0, 0", new DirectRingBuffer(direct(new byte[] {1, 2, 3})).toString());
+        assertEquals("new DirectRingBuffer(ByteBuffer,int,int)",
+                "[1, 2, 3], 1, 2", new DirectRingBuffer(direct(new byte[] {1, 2, 3}), 1, 2).toString());
+        ByteBuffer region = ByteBuffer.wrap(new byte[] {1, 2, 3, 4});
+        region.position(1);
+        assertEquals("new DirectRingBuffer(ByteBuffer) [sliced]",
+                "[2, 3, 4], 0, 0", new DirectRingBuffer(region).toString());
+    }
+
+    private String testWriteHelper(int tail, int length, int offset, int n) {
+        byte[] buffer = {1,2,3,4,5};
+        DirectRingBuffer instance = new DirectRingBuffer(direct(new byte[] {6,7,8}), tail, length);
+        int result = instance.write(buffer, offset, n);
+        return result + ":" + instance;
+    }
+    @Test public void testWrite() {
+        assertEquals("write(byte[],int,int)  [non-wrapping]",
+                "2:[2, 3, 8], 0, 2", testWriteHelper(0, 0, 1, 2));
+        assertEquals("write(byte[],int,int)  [offset non-wrapping]",
+                "2:[6, 2, 3], 1, 2", testWriteHelper(1, 0, 1, 2));
+        assertEquals("write(byte[],int,int)  [over-full non-wrapping]",
+                "3:[2, 3, 4], 0, 3", testWriteHelper(0, 0, 1, 4));
+        assertEquals("write(byte[],int,int)  [offset wrapping]",
+                "3:[3, 4, 2], 2, 3", testWriteHelper(2, 0, 1, 3));
+        assertEquals("write(byte[],int,int)  [prefilled overrun wrapping]",
+                "2:[3, 7, 2], 1, 3", testWriteHelper(1, 1, 1, 3));
+        assertEquals("write(byte[],int,int)  [prefilled full]",
+                "0:[6, 7, 8], 1, 3", testWriteHelper(1, 3, 1, 3));
+        boolean oob = false; try { testWriteHelper(2, 0, 3, 3); }
+        catch (IndexOutOfBoundsException e) { oob = true; }
+        assertTrue("write(byte[],int,int)  [out-of-bounds]", oob);
+    }
+
+    @Test public void testWriteByteBuffer() {
+        DirectRingBuffer instance = new DirectRingBuffer(direct(new byte[] {6,7,8}), 2, 0);
+        ByteBuffer source = ByteBuffer.wrap(new byte[] {1,2,3,4,5});
+        source.position(1);
+        assertEquals("write(ByteBuffer)  [overrun wrapping]", 3, instance.write(source));
+        assertEquals("[3, 4, 2], 2, 3", instance.toString());
+        assertEquals("write(ByteBuffer)  [position]", 4, source.position());
+        assertEquals("write(ByteBuffer)  [limit]", 5, source.limit());
+    }
+
+    @Test public void testWriter() {
+        DirectRingBuffer instance = new DirectRingBuffer(direct(new byte[] {6,7,8}), 1, 1);
+        final ByteBuffer source = ByteBuffer.wrap(new byte[] {1,2,3,4,5});
+        source.position(1);
+        int result = instance.writer(new DirectRingBufferWriter() {
+            @Override public void write(ByteBuffer segment) {
+                while(segment.hasRemaining()) {
+                    segment.put(source.get());
+                }
+            }
+        }, 3);
+        assertEquals("writer(DirectRingBufferWriter,int)  [prefilled overrun wrapping]",
+                "2:[3, 7, 2], 1, 3", result + ":" + instance);
+    }
+
+    private String testReadHelper(int tail, int length, int offset, int n) {
+        byte[] buffer = {1,2,3,4,5};
+        DirectRingBuffer instance = new DirectRingBuffer(direct(new byte[] {6,7,8}), tail, length);
+        int result = instance.read(buffer, offset, n);
+        return result + ":" + Arrays.toString(buffer) + ", " + instance.getTail() + ", " + instance.getLength();
+    }
+    @Test public void testRead() {
+        assertEquals("read(byte[],int,int)  [non-wrapping]",
+                "2:[1, 6, 7, 4, 5], 2, 1", testReadHelper(0, 3, 1, 2));
+        assertEquals("read(byte[],int,int)  [full non-wrapping]",
+                "3:[1, 6, 7, 8, 5], 0, 0", testReadHelper(0, 3, 1, 3));
+        assertEquals("read(byte[],int,int)  [offset wrapping]",
+                "2:[1, 8, 6, 4, 5], 1, 1", testReadHelper(2, 3, 1, 2));
+        assertEquals("read(byte[],int,int)  [underrun wrapping]",
+                "3:[1, 8, 6, 7, 5], 2, 0", testReadHelper(2, 3, 1, 4));
+        assertEquals("read(byte[],int,int)  [underrun empty]",
+                "0:[1, 2, 3, 4, 5], 1, 0", testReadHelper(1, 0, 1, 3));
+        boolean oob = false; try { testReadHelper(1, 3, 3, 3); }
+        catch (IndexOutOfBoundsException e) { oob = true; }
+        assertTrue("read(byte[],int,int)  [out-of-bounds]", oob);
+    }
+
+    @Test public void testReadByteBuffer() {
+        DirectRingBuffer instance = new DirectRingBuffer(direct(new byte[] {6,7,8}), 2, 3);
+        ByteBuffer destination = ByteBuffer.allocate(2);
+        assertEquals("read(ByteBuffer)  [offset wrapping]", 2, instance.read(destination));
+        assertEquals("[8, 6]", Arrays.toString(destination.array()));
+        assertEquals("read(ByteBuffer)  [tail]", 1, instance.getTail());
+        assertEquals("read(ByteBuffer)  [length]", 1, instance.getLength());
+    }
+
+    @Test public void testReader() {
+        DirectRingBuffer instance = new DirectRingBuffer(direct(new byte[] {6,7,8}), 2, 3);
+        final ByteBuffer destination = ByteBuffer.allocate(5);
+        int result = instance.reader(new DirectRingBufferReader() {
+            @Override public void read(ByteBuffer segment) {
+                destination.put(segment);
+            }
+        }, 4);
+        assertEquals("reader(DirectRingBufferReader,int)  [underrun wrapping]",
+                "3:[8, 6, 7, 0, 0], 2, 0", result + ":" + Arrays.toString(destination.array())
+                + ", " + instance.getTail() + ", " + instance.getLength());
+    }
+
+    private String testReadFromHelper(int tail, int length, int n) throws IOException {
+        Pipe pipe = Pipe.open();
+        pipe.sink().write(ByteBuffer.wrap(new byte[] {1,2,3,4,5}));
+        DirectRingBuffer instance = new DirectRingBuffer(direct(new byte[] {6,7,8}), tail, length);
+        int result = instance.readFrom(pipe.source(), n);
+        return result + ":" + instance;
+    }
+    @Test public void testReadFrom() throws IOException {
+        assertEquals("readFrom(ScatteringByteChannel,int)  [non-wrapping]",
+                "2:[1, 2, 8], 0, 2", testReadFromHelper(0, 0, 2));
+        assertEquals("readFrom(ScatteringByteChannel,int)  [overrun non-wrapping]",
+                "2:[1, 2, 8], 2, 3", testReadFromHelper(2, 1, 5));
+        assertEquals("readFrom(ScatteringByteChannel,int)  [overrun wrapping]",
+                "2:[2, 7, 1], 1, 3", testReadFromHelper(1, 1, 5));
+        assertEquals("readFrom(ScatteringByteChannel,int)  [full]",
+                "0:[6, 7, 8], 1, 3", testReadFromHelper(1, 3, 5));
+        Pipe pipe = Pipe.open();
+        pipe.sink().close();
+        assertEquals("readFrom(ScatteringByteChannel)  [end-of-stream]",
+                -1, new DirectRingBuffer(direct(new byte[] {6,7,8}), 0, 0).readFrom(pipe.source()));
+    }
+
+    private String testWriteToHelper(int tail, int length, int n) throws IOException {
+        Pipe pipe = Pipe.open();
+        DirectRingBuffer instance = new DirectRingBuffer(direct(new byte[] {6,7,8}), tail, length);
+        int result = instance.writeTo(pipe.sink(), n);
+        ByteBuffer received = ByteBuffer.allocate(result);
+        while(received.hasRemaining()) {
+            pipe.source().read(received);
+        }
+        return result + ":" + Arrays.toString(received.array())
+                + ", " + instance.getTail() + ", " + instance.getLength();
+    }
+    @Test public void testWriteTo() throws IOException {
+        assertEquals("writeTo(GatheringByteChannel,int)  [non-wrapping]",
+                "2:[6, 7], 2, 1", testWriteToHelper(0, 3, 2));
+        assertEquals("writeTo(GatheringByteChannel,int)  [underrun wrapping]",
+                "3:[8, 6, 7], 2, 0", testWriteToHelper(2, 3, 5));
+        assertEquals("writeTo(GatheringByteChannel,int)  [empty]",
+                "0:[], 1, 0", testWriteToHelper(1, 0, 5));
+    }
+}
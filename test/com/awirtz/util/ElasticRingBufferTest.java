@@ -0,0 +1,135 @@
+package com.awirtz.util;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Pipe;
+import java.util.Arrays;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+public class ElasticRingBufferTest {
+
+    public ElasticRingBufferTest() {}
+
+    @Test public void testElasticRingBuffer() {
+        assertEquals("new ElasticRingBuffer(int,int)",
+                "[0, 0], 0, 0", new ElasticRingBuffer(2, 8).toString());
+        boolean iae = false; try { new ElasticRingBuffer(4, 2); }
+        catch (IllegalArgumentException e) { iae = true; }
+        assertTrue("new ElasticRingBuffer(int,int)  [max below initial]", iae);
+    }
+
+    @Test public void testResize() {
+        RingBuffer instance = new RingBuffer(new byte[] {1, 2, 3}, 2, 3);
+        instance.resize(5);
+        assertEquals("resize(int)  [unwrapping]", "[3, 1, 2, 0, 0], 0, 3", instance.toString());
+        instance.resize(3);
+        assertEquals("resize(int)  [exact]", "[3, 1, 2], 0, 3", instance.toString());
+        boolean iae = false; try { instance.resize(2); }
+        catch (IllegalArgumentException e) { iae = true; }
+        assertTrue("resize(int)  [too small]", iae);
+    }
+
+    @Test public void testGrow() {
+        ElasticRingBuffer instance = new ElasticRingBuffer(4, 10);
+        byte[] buffer = {1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12};
+        instance.write(buffer, 0, 3);
+        instance.read(new byte[2], 0, 2);
+        assertEquals("write(byte[],int,int)  [growing]", 5, instance.write(buffer, 3, 5));
+        assertEquals("[3, 4, 5, 6, 7, 8, 0, 0], 0, 6", instance.toString());
+        assertEquals("write(byte[],int,int)  [growing to maximum]", 4, instance.write(buffer, 8, 4));
+        assertEquals("[3, 4, 5, 6, 7, 8, 9, 10, 11, 12], 0, 10", instance.toString());
+        assertFalse("put(byte)  [at maximum]", instance.put((byte)13));
+        byte[] out = new byte[10];
+        assertEquals("read(byte[],int,int)", 10, instance.read(out, 0, 10));
+        assertEquals("[3, 4, 5, 6, 7, 8, 9, 10, 11, 12]", Arrays.toString(out));
+    }
+
+    @Test public void testPutGrow() {
+        ElasticRingBuffer instance = new ElasticRingBuffer(1, 4);
+        assertTrue("put(byte)", instance.put((byte)1));
+        assertTrue("put(byte)  [growing]", instance.put((byte)2));
+        assertTrue("put(byte[],int,int)  [growing]", instance.put(new byte[] {3, 4}, 0, 2));
+        assertEquals("[1, 2, 3, 4], 0, 4", instance.toString());
+    }
+
+    @Test public void testShrink() {
+        ElasticRingBuffer instance = new ElasticRingBuffer(2, 64, 3);
+        byte[] buffer = new byte[16];
+        instance.write(buffer, 0, 16);
+        assertEquals("getMaxLength()  [grown]", 16, instance.getMaxLength());
+        instance.read(buffer, 0, 13);
+        assertEquals("getMaxLength()  [low occupancy]", 16, instance.getMaxLength());
+        instance.read(buffer, 0, 0);
+        instance.read(buffer, 0, 0);
+        assertEquals("getMaxLength()  [shrunk]", 8, instance.getMaxLength());
+        assertEquals("getLength()  [shrunk]", 3, instance.getLength());
+        for(int i = 0; i < 20; i++) {
+            instance.get();
+        }
+        assertEquals("getMaxLength()  [initial size]", 2, instance.getMaxLength());
+        assertEquals("getLength()  [drained]", 0, instance.getLength());
+    }
+
+    @Test public void testShrinkDrained() {
+        ElasticRingBuffer instance = new ElasticRingBuffer(1024, 1 << 20);
+        byte[] burst = new byte[100000];
+        assertEquals("write(byte[],int,int)  [burst]", burst.length, instance.write(burst, 0, burst.length));
+        assertTrue("getMaxLength()  [grown]", instance.getMaxLength() >= burst.length);
+        instance.read(burst, 0, 60000);
+        assertTrue("getMaxLength()  [still busy]", instance.getMaxLength() >= burst.length);
+        instance.read(burst, 0, 60000);
+        assertEquals("getMaxLength()  [drained]", 1024, instance.getMaxLength());
+        assertEquals("getLength()  [drained]", 0, instance.getLength());
+        assertEquals("read(byte[],int,int)  [empty]", 0, instance.read(burst, 0, 1));
+        assertEquals("getMaxLength()  [idle]", 1024, instance.getMaxLength());
+    }
+
+    @Test public void testShrinkReset() {
+        ElasticRingBuffer instance = new ElasticRingBuffer(2, 64, 2);
+        byte[] buffer = new byte[8];
+        instance.write(buffer, 0, 8);
+        instance.read(buffer, 0, 7);
+        instance.write(buffer, 0, 4);
+        instance.read(buffer, 0, 0);
+        assertEquals("getMaxLength()  [busy]", 8, instance.getMaxLength());
+    }
+
+    @Test public void testReadFrom() throws IOException {
+        Pipe pipe = Pipe.open();
+        pipe.sink().write(ByteBuffer.wrap(new byte[] {1, 2, 3, 4, 5}));
+        ElasticRingBuffer instance = new ElasticRingBuffer(2, 8);
+        assertEquals("readFrom(ScatteringByteChannel)  [free space]", 2, instance.readFrom(pipe.source()));
+        assertEquals("readFrom(ScatteringByteChannel)  [growing]", 2, instance.readFrom(pipe.source()));
+        assertEquals("readFrom(ScatteringByteChannel,int)  [growing]", 1, instance.readFrom(pipe.source(), 5));
+        assertEquals("[1, 2, 3, 4, 5, 0, 0, 0], 0, 5", instance.toString());
+    }
+
+    @Test public void testPutLongGrow() {
+        ElasticRingBuffer instance = new ElasticRingBuffer(2, 16);
+        assertTrue("putLong(long)  [growing]", instance.putLong(0x0102030405060708L));
+        assertEquals("getMaxLength()  [grown]", 8, instance.getMaxLength());
+        assertEquals("getLong()", 0x0102030405060708L, instance.getLong());
+    }
+
+    @Test public void testFramed() {
+        ElasticRingBuffer instance = new ElasticRingBuffer(8, 64);
+        FramedRingBuffer framed = new FramedRingBuffer(instance);
+        byte[] message = new byte[16];
+        message[15] = 7;
+        assertTrue("writeMessage(byte[],int,int)  [grows]", framed.writeMessage(message, 0, 16));
+        assertEquals("writeMessage(byte[],int,int)  [grown]", 20, instance.getMaxLength());
+        assertTrue("writeMessage(RingBufferWriter,int)  [grows]", framed.writeMessage(new RingBufferWriter() {
+            @Override public void write(byte[] buf, int off, int len) {
+            }
+        }, 20));
+        assertEquals("writeMessage(RingBufferWriter,int)  [grown]", 44, instance.getMaxLength());
+        assertFalse("writeMessage(byte[],int,int)  [beyond maximum]", framed.writeMessage(new byte[61], 0, 61));
+        byte[] out = new byte[20];
+        assertEquals("readMessage(byte[],int,int)", 16, framed.readMessage(out, 0, 20));
+        assertEquals("readMessage(byte[],int,int)", 7, out[15]);
+        assertEquals("readMessage(byte[],int,int)  [second]", 20, framed.readMessage(out, 0, 20));
+    }
+}
@@ -0,0 +1,118 @@
+package com.awirtz.util;
+
+import java.util.Arrays;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+public class FramedRingBufferTest {
+
+    public FramedRingBufferTest() {}
+
+    @Test public void testWriteMessage() {
+        FramedRingBuffer instance = new FramedRingBuffer(new RingBuffer(new byte[8], 6, 0));
+        assertTrue("writeMessage(byte[],int,int)  [wrapping]",
+                instance.writeMessage(new byte[] {1, 2, 3}, 0, 3));
+        assertEquals("[0, 3, 1, 2, 3, 0, 0, 0], 6, 7", instance.toString());
+        assertFalse("writeMessage(byte[],int,int)  [overrun]",
+                instance.writeMessage(new byte[] {4}, 0, 1));
+        assertEquals("[0, 3, 1, 2, 3, 0, 0, 0], 6, 7", instance.toString());
+        assertEquals("getFreeSpace()  [full]", 0, instance.getFreeSpace());
+    }
+
+    @Test public void testWriteFailure() {
+        FramedRingBuffer instance = new FramedRingBuffer(32);
+        boolean oob = false; try { instance.writeMessage(new byte[2], 0, 5); }
+        catch (IndexOutOfBoundsException e) { oob = true; }
+        assertTrue("writeMessage(byte[],int,int)  [out-of-bounds]", oob);
+        assertTrue("writeMessage(byte[],int,int)  [out-of-bounds leaves nothing]", instance.isEmpty());
+        boolean failed = false; try {
+            instance.writeMessage(new RingBufferWriter() {
+                @Override public void write(byte[] buf, int off, int len) {
+                    throw new IllegalStateException();
+                }
+            }, 8);
+        }
+        catch (IllegalStateException e) { failed = true; }
+        assertTrue("writeMessage(RingBufferWriter,int)  [writer throws]", failed);
+        assertTrue("writeMessage(RingBufferWriter,int)  [prefix taken back]", instance.isEmpty());
+        instance.writeMessage(new byte[] {1, 2, 3}, 0, 3);
+        byte[] out = new byte[8];
+        assertEquals("readMessage(byte[],int,int)  [still in frame]", 3, instance.readMessage(out, 0, 8));
+        assertEquals("[1, 2, 3, 0, 0, 0, 0, 0]", Arrays.toString(out));
+    }
+
+    @Test public void testPeekLength() {
+        FramedRingBuffer instance = new FramedRingBuffer(new RingBuffer(new byte[8], 6, 0));
+        assertEquals("peekLength()  [empty]", -1, instance.peekLength());
+        instance.writeMessage(new byte[] {1, 2, 3}, 0, 3);
+        assertEquals("peekLength()  [wrapping]", 3, instance.peekLength());
+        assertEquals("peekLength()  [not consumed]", 7, instance.getRingBuffer().getLength());
+    }
+
+    @Test public void testReadMessage() {
+        FramedRingBuffer instance = new FramedRingBuffer(new RingBuffer(new byte[8], 6, 0));
+        instance.writeMessage(new byte[] {1, 2, 3}, 0, 3);
+        byte[] out = new byte[4];
+        boolean tooSmall = false; try { instance.readMessage(out, 0, 2); }
+        catch (IllegalArgumentException e) { tooSmall = true; }
+        assertTrue("readMessage(byte[],int,int)  [too small]", tooSmall);
+        assertEquals("readMessage(byte[],int,int)  [too small not consumed]",
+                3, instance.peekLength());
+        assertEquals("readMessage(byte[],int,int)", 3, instance.readMessage(out, 1, 3));
+        assertEquals("[0, 1, 2, 3]", Arrays.toString(out));
+        assertTrue("isEmpty()", instance.isEmpty());
+        assertEquals("readMessage(byte[],int,int)  [empty]", -1, instance.readMessage(out, 0, 4));
+    }
+
+    @Test public void testWriterReader() {
+        FramedRingBuffer instance = new FramedRingBuffer(new RingBuffer(new byte[13], 7, 0));
+        assertTrue("writeMessage(RingBufferWriter,int)  [wrapping]",
+                instance.writeMessage(new RingBufferWriter() {
+            byte next = 1;
+            @Override public void write(byte[] buf, int off, int len) {
+                for(int i = 0; i < len; i++) {
+                    buf[off + i] = next++;
+                }
+            }
+        }, 5));
+        assertTrue("writeMessage(byte[],int,int)  [empty message]",
+                instance.writeMessage(new byte[0], 0, 0));
+        final StringBuilder segments = new StringBuilder();
+        assertEquals("readMessage(RingBufferReader)  [wrapping]", 5,
+                instance.readMessage(new RingBufferReader() {
+            @Override public void read(byte[] buf, int off, int len) {
+                segments.append(Arrays.toString(Arrays.copyOfRange(buf, off, off + len)));
+            }
+        }));
+        assertEquals("[1, 2][3, 4, 5]", segments.toString());
+        assertEquals("readMessage(RingBufferReader)  [empty message]", 0,
+                instance.readMessage(new RingBufferReader() {
+            @Override public void read(byte[] buf, int off, int len) {
+            }
+        }));
+        assertTrue("isEmpty()", instance.isEmpty());
+    }
+
+    @Test public void testOverwrite() {
+        FramedRingBuffer instance = new FramedRingBuffer(20, true);
+        assertTrue("isOverwrite()", instance.isOverwrite());
+        assertTrue("writeMessage(byte[],int,int)", instance.writeMessage(new byte[] {1, 2, 3}, 0, 3));
+        assertTrue("writeMessage(byte[],int,int)", instance.writeMessage(new byte[] {4, 5}, 0, 2));
+        assertTrue("writeMessage(byte[],int,int)", instance.writeMessage(new byte[] {6}, 0, 1));
+        assertEquals("writeMessage(byte[],int,int)  [room to spare]", 0, instance.getDroppedMessages());
+        // needs 11 bytes with only 2 free, so the two oldest messages go
+        assertTrue("writeMessage(byte[],int,int)  [overwriting]", instance.writeMessage(new byte[] {7, 8, 9, 10, 11, 12, 13}, 0, 7));
+        assertEquals("getDroppedMessages()", 2, instance.getDroppedMessages());
+        assertFalse("writeMessage(byte[],int,int)  [too long]", instance.writeMessage(new byte[17], 0, 17));
+        assertEquals("writeMessage(byte[],int,int)  [too long drops nothing]", 2, instance.getDroppedMessages());
+        byte[] buffer = new byte[16];
+        assertEquals("readMessage(byte[],int,int)  [survivor]", 1, instance.readMessage(buffer, 0, 16));
+        assertEquals("readMessage(byte[],int,int)  [survivor]", 6, buffer[0]);
+        assertEquals("readMessage(byte[],int,int)  [newest]", 7, instance.readMessage(buffer, 0, 16));
+        assertEquals("readMessage(byte[],int,int)  [newest]", 13, buffer[6]);
+        assertTrue("isEmpty()", instance.isEmpty());
+        assertFalse("isOverwrite()  [default]", new FramedRingBuffer(20).isOverwrite());
+    }
+}
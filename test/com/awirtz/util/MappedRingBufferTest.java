@@ -0,0 +1,91 @@
+package com.awirtz.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+public class MappedRingBufferTest {
+
+    public MappedRingBufferTest() {}
+
+    private static File tempFile() throws IOException {
+        File file = File.createTempFile("MappedRingBufferTest", ".rb");
+        file.deleteOnExit();
+        return file;
+    }
+
+    @Test public void testMappedRingBuffer() throws IOException {
+        File file = tempFile();
+        assertEquals("new MappedRingBuffer(File,int)",
+                "[0, 0, 0], 0, 0", new MappedRingBuffer(file, 3).toString());
+        assertEquals("new MappedRingBuffer(File)",
+                3, new MappedRingBuffer(file).getMaxLength());
+        boolean mismatch = false; try { new MappedRingBuffer(file, 4); }
+        catch (IOException e) { mismatch = true; }
+        assertTrue("new MappedRingBuffer(File,int)  [size mismatch]", mismatch);
+    }
+
+    @Test public void testWriteRead() throws IOException {
+        MappedRingBuffer instance = new MappedRingBuffer(tempFile(), 3);
+        byte[] buffer = {1, 2, 3, 4, 5};
+        assertEquals("write(byte[],int,int)  [non-wrapping]",
+                2, instance.write(buffer, 0, 2));
+        byte[] out = new byte[5];
+        assertEquals("read(byte[],int,int)  [non-wrapping]",
+                1, instance.read(out, 0, 1));
+        assertEquals("write(byte[],int,int)  [overrun wrapping]",
+                2, instance.write(buffer, 2, 3));
+        assertEquals("write(byte[],int,int)  [full]",
+                0, instance.write(buffer, 4, 1));
+        assertEquals("[4, 2, 3], 1, 3", instance.toString());
+        assertEquals("read(byte[],int,int)  [underrun wrapping]",
+                3, instance.read(out, 1, 5));
+        assertEquals("[1, 2, 3, 4, 0]", Arrays.toString(out));
+        assertEquals("read(byte[],int,int)  [empty]",
+                0, instance.read(out, 0, 1));
+    }
+
+    @Test public void testReopen() throws IOException {
+        File file = tempFile();
+        MappedRingBuffer before = new MappedRingBuffer(file, 4);
+        before.write(new byte[] {1, 2, 3}, 0, 3);
+        before.read(new byte[1], 0, 1);
+        before.write(new byte[] {4, 5}, 0, 2);
+        before.force();
+        MappedRingBuffer after = new MappedRingBuffer(file);
+        assertEquals("reopen  [state]", "[5, 2, 3, 4], 1, 4", after.toString());
+        byte[] out = new byte[4];
+        assertEquals("reopen  [read]", 4, after.read(out, 0, 4));
+        assertEquals("[2, 3, 4, 5]", Arrays.toString(out));
+    }
+
+    @Test public void testDurable() throws IOException {
+        File file = tempFile();
+        MappedRingBuffer before = new MappedRingBuffer(file, 4, true);
+        assertTrue("isDurable()", before.isDurable());
+        assertFalse("isDurable()  [default]", new MappedRingBuffer(file).isDurable());
+        assertEquals("write(byte[],int,int)  [durable]", 3, before.write(new byte[] {1, 2, 3}, 0, 3));
+        MappedRingBuffer after = new MappedRingBuffer(file, true);
+        byte[] out = new byte[4];
+        assertEquals("reopen  [durable]", 3, after.read(out, 0, 4));
+        assertEquals("[1, 2, 3, 0]", Arrays.toString(out));
+    }
+
+    @Test public void testShared() throws IOException {
+        File file = tempFile();
+        MappedRingBuffer producer = new MappedRingBuffer(file, 3);
+        MappedRingBuffer consumer = new MappedRingBuffer(file, 3);
+        byte[] out = new byte[3];
+        for(int i = 0; i < 10; i++) {
+            assertEquals("shared  [write]", 2, producer.write(new byte[] {(byte)i, (byte)-i}, 0, 2));
+            assertEquals("shared  [read]", 2, consumer.read(out, 0, 3));
+            assertEquals("shared  [content]", "[" + i + ", " + -i + ", 0]",
+                    Arrays.toString(new byte[] {out[0], out[1], 0}));
+        }
+        assertEquals("shared  [producer free space]", 3, producer.getFreeSpace());
+    }
+}
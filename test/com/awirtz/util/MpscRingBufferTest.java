@@ -0,0 +1,154 @@
+package com.awirtz.util;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+public class MpscRingBufferTest {
+
+    public MpscRingBufferTest() {}
+
+    @Test public void testMpscRingBuffer() {
+        assertEquals("new MpscRingBuffer(int)",
+                "[0, 0, 0], 0, 0", new MpscRingBuffer(3).toString());
+        assertEquals("new MpscRingBuffer(byte[])",
+                "[1, 2, 3], 0, 0", new MpscRingBuffer(new byte[] {1, 2, 3}).toString());
+    }
+
+    @Test public void testWriteRead() {
+        MpscRingBuffer instance = new MpscRingBuffer(3);
+        byte[] buffer = {1, 2, 3, 4, 5};
+        assertEquals("write(byte[],int,int)  [non-wrapping]",
+                2, instance.write(buffer, 0, 2));
+        byte[] out = new byte[5];
+        assertEquals("read(byte[],int,int)  [non-wrapping]",
+                1, instance.read(out, 0, 1));
+        assertEquals("write(byte[],int,int)  [overrun wrapping]",
+                2, instance.write(buffer, 2, 3));
+        assertEquals("write(byte[],int,int)  [full]",
+                0, instance.write(buffer, 4, 1));
+        assertEquals("[4, 2, 3], 1, 3", instance.toString());
+        assertEquals("read(byte[],int,int)  [underrun wrapping]",
+                3, instance.read(out, 1, 5));
+        assertEquals("[1, 2, 3, 4, 0]", Arrays.toString(out));
+        assertEquals("read(byte[],int,int)  [empty]",
+                0, instance.read(out, 0, 1));
+    }
+
+    @Test public void testWriterThrows() {
+        MpscRingBuffer instance = new MpscRingBuffer(new byte[] {6, 7, 8, 9});
+        instance.write(new byte[] {1, 2, 3}, 0, 3);
+        instance.read(new byte[3], 0, 3);
+        boolean failed = false; try {
+            instance.writer(new RingBufferWriter() {
+                @Override public void write(byte[] buf, int off, int len) {
+                    buf[off] = 5;
+                    throw new IllegalStateException();
+                }
+            }, 3);
+        }
+        catch (IllegalStateException e) { failed = true; }
+        assertTrue("writer(RingBufferWriter,int)  [throws]", failed);
+        assertEquals("writer(RingBufferWriter,int)  [abandoned region committed]", 3, instance.getLength());
+        assertEquals("write(byte[],int,int)  [after abandoned region]", 1, instance.write(new byte[] {4}, 0, 1));
+        byte[] out = new byte[4];
+        assertEquals("read(byte[],int,int)", 4, instance.read(out, 0, 4));
+        assertEquals("writer(RingBufferWriter,int)  [abandoned region blanked]",
+                "[0, 0, 0, 4]", Arrays.toString(out));
+    }
+
+    @Test public void testWriteOutOfBounds() {
+        MpscRingBuffer instance = new MpscRingBuffer(8);
+        boolean oob = false; try { instance.write(new byte[2], 0, 5); }
+        catch (IndexOutOfBoundsException e) { oob = true; }
+        assertTrue("write(byte[],int,int)  [out-of-bounds]", oob);
+        assertEquals("write(byte[],int,int)  [nothing claimed]", 8, instance.getFreeSpace());
+        assertEquals("write(byte[],int,int)  [after out-of-bounds]",
+                2, instance.write(new byte[] {1, 2}, 0, 2));
+        assertEquals("getLength()  [after out-of-bounds]", 2, instance.getLength());
+    }
+
+    @Test public void testWriterReader() {
+        MpscRingBuffer instance = new MpscRingBuffer(new byte[] {6, 7, 8});
+        final byte[] buffer = {1, 2, 3, 4, 5};
+        instance.write(buffer, 0, 2);
+        instance.read(new byte[2], 0, 2);
+        assertEquals("writer(RingBufferWriter,int)  [wrapping]",
+                3, instance.writer(new RingBufferWriter() {
+            int ptr = 0;
+            @Override public void write(byte[] buf, int off, int len) {
+                System.arraycopy(buffer, ptr, buf, off, len);
+                ptr += len;
+            }
+        }, 5));
+        assertEquals("[2, 3, 1], 2, 3", instance.toString());
+        final byte[] out = new byte[5];
+        assertEquals("reader(RingBufferReader,int)  [wrapping]",
+                3, instance.reader(new RingBufferReader() {
+            int ptr = 0;
+            @Override public void read(byte[] buf, int off, int len) {
+                System.arraycopy(buf, off, out, ptr, len);
+                ptr += len;
+            }
+        }, 5));
+        assertEquals("[1, 2, 3, 0, 0]", Arrays.toString(out));
+    }
+
+    @Test public void testWriteFullyTimeout() throws InterruptedException {
+        MpscRingBuffer instance = new MpscRingBuffer(3, new ParkingWaitStrategy());
+        assertEquals("writeFully(byte[],int,int,long,TimeUnit)  [timeout]",
+                3, instance.writeFully(new byte[] {1, 2, 3, 4, 5}, 0, 5, 5, TimeUnit.MILLISECONDS));
+        byte[] out = new byte[5];
+        assertEquals("readFully(byte[],int,int,long,TimeUnit)  [timeout]",
+                3, instance.readFully(out, 0, 5, 5, TimeUnit.MILLISECONDS));
+        assertEquals("[1, 2, 3, 0, 0]", Arrays.toString(out));
+    }
+
+    @Test public void testConcurrentProducers() throws InterruptedException {
+        final MpscRingBuffer instance = new MpscRingBuffer(64);
+        final int producers = 4;
+        final int perProducer = 1 << 16;
+        Thread[] threads = new Thread[producers];
+        for(int p = 0; p < producers; p++) {
+            final byte id = (byte)p;
+            threads[p] = new Thread() {
+                @Override public void run() {
+                    byte[] chunk = new byte[13];
+                    Arrays.fill(chunk, id);
+                    int sent = 0;
+                    while(sent < perProducer) {
+                        int n = instance.write(chunk, 0, Math.min(chunk.length, perProducer - sent));
+                        if(n == 0) {
+                            Thread.yield();
+                        }
+                        sent += n;
+                    }
+                }
+            };
+            threads[p].start();
+        }
+        int[] counts = new int[producers];
+        byte[] chunk = new byte[29];
+        int received = 0;
+        while(received < producers * perProducer) {
+            int n = instance.read(chunk, 0, chunk.length);
+            if(n == 0) {
+                Thread.yield();
+            }
+            for(int i = 0; i < n; i++) {
+                counts[chunk[i]]++;
+            }
+            received += n;
+        }
+        for(Thread thread : threads) {
+            thread.join();
+        }
+        for(int p = 0; p < producers; p++) {
+            assertEquals("concurrent producers deliver every byte", perProducer, counts[p]);
+        }
+        assertEquals("concurrent producers drain", 0, instance.getLength());
+        assertEquals("concurrent producers free space", 64, instance.getFreeSpace());
+    }
+}
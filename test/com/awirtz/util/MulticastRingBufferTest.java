@@ -0,0 +1,204 @@
+package com.awirtz.util;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicBoolean;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+public class MulticastRingBufferTest {
+
+    public MulticastRingBufferTest() {}
+
+    @Test public void testMulticastRingBuffer() {
+        assertEquals("new MulticastRingBuffer(int)",
+                "[0, 0, 0], 0, 0", new MulticastRingBuffer(3).toString());
+        assertFalse("new MulticastRingBuffer(int)  [not overrun]", new MulticastRingBuffer(3).isOverrun());
+        assertTrue("new MulticastRingBuffer(int,boolean)", new MulticastRingBuffer(3, true).isOverrun());
+    }
+
+    @Test public void testReaders() {
+        MulticastRingBuffer instance = new MulticastRingBuffer(4);
+        byte[] buffer = {1, 2, 3, 4, 5, 6};
+        assertEquals("write(byte[],int,int)  [no readers]", 3, instance.write(buffer, 0, 3));
+        MulticastRingBuffer.Cursor a = instance.addReader();
+        MulticastRingBuffer.Cursor b = instance.addReader();
+        assertEquals("getReaderCount()", 2, instance.getReaderCount());
+        assertEquals("getLength(Cursor)  [registered late]", 0, instance.getLength(a));
+        assertEquals("write(byte[],int,int)  [wrapping]", 3, instance.write(buffer, 3, 3));
+        byte[] out = new byte[4];
+        assertEquals("read(Cursor,byte[],int,int)  [first reader]", 3, instance.read(a, out, 0, 4));
+        assertEquals("[4, 5, 6, 0]", Arrays.toString(out));
+        assertEquals("write(byte[],int,int)  [held back by slowest]", 1, instance.write(buffer, 0, 3));
+        assertEquals("getFreeSpace()  [held back by slowest]", 0, instance.getFreeSpace());
+        Arrays.fill(out, (byte)0);
+        assertEquals("read(Cursor,byte[],int,int)  [second reader]", 4, instance.read(b, out, 0, 4));
+        assertEquals("[4, 5, 6, 1]", Arrays.toString(out));
+        assertEquals("getFreeSpace()  [first reader]", 3, instance.getFreeSpace());
+        assertTrue("removeReader(Cursor)", instance.removeReader(a));
+        assertFalse("removeReader(Cursor)  [twice]", instance.removeReader(a));
+        assertEquals("getFreeSpace()  [removed]", 4, instance.getFreeSpace());
+    }
+
+    @Test public void testReader() {
+        MulticastRingBuffer instance = new MulticastRingBuffer(new byte[] {6, 7, 8}, false);
+        MulticastRingBuffer.Cursor a = instance.addReader();
+        MulticastRingBuffer.Cursor b = instance.addReader();
+        instance.write(new byte[] {1, 2}, 0, 2);
+        instance.read(a, new byte[2], 0, 2);
+        instance.read(b, new byte[2], 0, 2);
+        instance.write(new byte[] {3, 4, 5}, 0, 3);
+        final byte[][] seen = new byte[2][];
+        for(final MulticastRingBuffer.Cursor cursor : new MulticastRingBuffer.Cursor[] {a, b}) {
+            final byte[] out = new byte[3];
+            assertEquals("reader(Cursor,RingBufferReader,int)  [wrapping]",
+                    3, instance.reader(cursor, new RingBufferReader() {
+                int ptr = 0;
+                @Override public void read(byte[] buf, int off, int len) {
+                    System.arraycopy(buf, off, out, ptr, len);
+                    ptr += len;
+                }
+            }, 5));
+            seen[cursor == a ? 0 : 1] = out;
+        }
+        assertEquals("[3, 4, 5]", Arrays.toString(seen[0]));
+        assertEquals("[3, 4, 5]", Arrays.toString(seen[1]));
+    }
+
+    @Test public void testOverrun() {
+        MulticastRingBuffer instance = new MulticastRingBuffer(4, true);
+        MulticastRingBuffer.Cursor slow = instance.addReader();
+        byte[] buffer = {1, 2, 3, 4, 5, 6, 7};
+        assertEquals("write(byte[],int,int)  [overrun]", 3, instance.write(buffer, 0, 3));
+        assertEquals("write(byte[],int,int)  [overrun lapping]", 4, instance.write(buffer, 3, 4));
+        assertEquals("getFreeSpace()  [overrun]", 4, instance.getFreeSpace());
+        byte[] out = new byte[8];
+        assertEquals("read(Cursor,byte[],int,int)  [overrun]", 4, instance.read(slow, out, 0, 8));
+        assertEquals("[4, 5, 6, 7, 0, 0, 0, 0]", Arrays.toString(out));
+        assertEquals("getDropped()", 3, slow.getDropped());
+        assertEquals("write(byte[],int,int)  [overrun oversize]", 4, instance.write(buffer, 0, 7));
+        assertEquals("read(Cursor,byte[],int,int)  [overrun oversize]", 4, instance.read(slow, out, 0, 8));
+        assertEquals("getDropped()  [unchanged]", 3, slow.getDropped());
+    }
+
+    @Test public void testOverrunDuringRead() {
+        final MulticastRingBuffer instance = new MulticastRingBuffer(4, true);
+        MulticastRingBuffer.Cursor cursor = instance.addReader();
+        instance.write(new byte[] {1, 2, 3}, 0, 3);
+        assertEquals("reader(Cursor,RingBufferReader,int)  [lapped during read]",
+                -1, instance.reader(cursor, new RingBufferReader() {
+            @Override public void read(byte[] buf, int off, int len) {
+                instance.write(new byte[] {4, 5, 6}, 0, 3);
+            }
+        }, 3));
+        assertEquals("getDropped()  [lapped during read]", 3, cursor.getDropped());
+        byte[] out = new byte[4];
+        assertEquals("read(Cursor,byte[],int,int)  [after lapping]", 3, instance.read(cursor, out, 0, 4));
+        assertEquals("[4, 5, 6, 0]", Arrays.toString(out));
+    }
+
+    @Test public void testConcurrentReaders() throws InterruptedException {
+        final MulticastRingBuffer instance = new MulticastRingBuffer(64);
+        final int total = 1 << 16;
+        final int readers = 3;
+        final boolean[] failed = new boolean[readers];
+        Thread[] threads = new Thread[readers];
+        for(int r = 0; r < readers; r++) {
+            final int id = r;
+            final MulticastRingBuffer.Cursor cursor = instance.addReader();
+            threads[r] = new Thread() {
+                @Override public void run() {
+                    byte[] chunk = new byte[17];
+                    int received = 0;
+                    while(received < total) {
+                        int n = instance.read(cursor, chunk, 0, chunk.length);
+                        if(n == 0) {
+                            Thread.yield();
+                        }
+                        for(int i = 0; i < n; i++) {
+                            if(chunk[i] != (byte)(received + i)) {
+                                failed[id] = true;
+                            }
+                        }
+                        received += n;
+                    }
+                }
+            };
+            threads[r].start();
+        }
+        byte[] chunk = new byte[13];
+        int sent = 0;
+        while(sent < total) {
+            int n = Math.min(chunk.length, total - sent);
+            for(int i = 0; i < n; i++) {
+                chunk[i] = (byte)(sent + i);
+            }
+            int written = instance.write(chunk, 0, n);
+            if(written == 0) {
+                Thread.yield();
+            }
+            sent += written;
+        }
+        for(Thread thread : threads) {
+            thread.join();
+        }
+        for(int r = 0; r < readers; r++) {
+            assertFalse("concurrent readers see every byte in order", failed[r]);
+        }
+    }
+
+    @Test public void testConcurrentAddReader() throws InterruptedException {
+        // a capacity which is not a multiple of 256, so that overwritten
+        // bytes break the sequence
+        final MulticastRingBuffer instance = new MulticastRingBuffer(100);
+        final AtomicBoolean done = new AtomicBoolean();
+        final RuntimeException[] error = new RuntimeException[1];
+        Thread producer = new Thread() {
+            @Override public void run() {
+                byte[] chunk = new byte[7];
+                long sent = 0;
+                try {
+                    while(!done.get()) {
+                        for(int i = 0; i < chunk.length; i++) {
+                            chunk[i] = (byte)(sent + i);
+                        }
+                        int written = instance.write(chunk, 0, chunk.length);
+                        if(written == 0) {
+                            Thread.yield();
+                        }
+                        sent += written;
+                    }
+                } catch(RuntimeException e) {
+                    error[0] = e;
+                }
+            }
+        };
+        producer.start();
+        boolean failed = false;
+        byte[] chunk = new byte[11];
+        for(int round = 0; round < 200; round++) {
+            MulticastRingBuffer.Cursor cursor = instance.addReader();
+            int received = 0;
+            byte expected = 0;
+            while(received < 300 && error[0] == null) {
+                int n = instance.read(cursor, chunk, 0, chunk.length);
+                if(n == 0) {
+                    Thread.yield();
+                }
+                for(int i = 0; i < n; i++, received++) {
+                    if(received > 0 && chunk[i] != expected) {
+                        failed = true;
+                    }
+                    expected = (byte)(chunk[i] + 1);
+                }
+            }
+            instance.removeReader(cursor);
+        }
+        done.set(true);
+        producer.join();
+        assertTrue("addReader()  [producer unharmed]", error[0] == null);
+        assertFalse("addReader()  [new readers see an unbroken sequence]", failed);
+        assertTrue("getFreeSpace()  [never negative]", instance.getFreeSpace() >= 0);
+    }
+}
@@ -0,0 +1,62 @@
+package com.awirtz.util;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+public class OverwritingRingBufferTest {
+
+    public OverwritingRingBufferTest() {}
+
+    @Test public void testWrite() {
+        OverwritingRingBuffer instance = new OverwritingRingBuffer(5);
+        assertEquals("write(byte[],int,int)  [fits]", 3, instance.write(new byte[] {1, 2, 3}, 0, 3));
+        assertEquals("write(byte[],int,int)  [overwriting]", 4, instance.write(new byte[] {4, 5, 6, 7}, 0, 4));
+        assertArrayEquals("write(byte[],int,int)  [latest kept]", new byte[] {3, 4, 5, 6, 7}, instance.snapshot());
+        assertEquals("getOverwritten()", 2, instance.getOverwritten());
+        assertEquals("write(byte[],int,int)  [longer than capacity]", 7,
+                instance.write(new byte[] {10, 11, 12, 13, 14, 15, 16}, 0, 7));
+        assertArrayEquals("write(byte[],int,int)  [last bytes kept]", new byte[] {12, 13, 14, 15, 16}, instance.snapshot());
+        assertEquals("getOverwritten()  [longer than capacity]", 9, instance.getOverwritten());
+        byte[] buffer = new byte[5];
+        assertEquals("read(byte[],int,int)", 5, instance.read(buffer, 0, 5));
+        assertArrayEquals("read(byte[],int,int)  [in order]", new byte[] {12, 13, 14, 15, 16}, buffer);
+    }
+
+    @Test public void testWriter() {
+        OverwritingRingBuffer instance = new OverwritingRingBuffer(4);
+        instance.write(new byte[] {1, 2, 3}, 0, 3);
+        assertEquals("writer(RingBufferWriter,int)", 2, instance.writer(new RingBufferWriter() {
+            byte next = 8;
+            @Override public void write(byte[] buf, int off, int len) {
+                for(int i = 0; i < len; i++) {
+                    buf[off + i] = next++;
+                }
+            }
+        }, 2));
+        assertArrayEquals("writer(RingBufferWriter,int)  [overwriting]", new byte[] {2, 3, 8, 9}, instance.snapshot());
+        assertEquals("writer(RingBufferWriter,int)  [longer than capacity]", 4, instance.writer(new RingBufferWriter() {
+            @Override public void write(byte[] buf, int off, int len) {
+            }
+        }, 6));
+    }
+
+    @Test public void testPut() {
+        OverwritingRingBuffer instance = new OverwritingRingBuffer(4);
+        for(byte b = 1; b <= 6; b++) {
+            assertTrue("put(byte)", instance.put(b));
+        }
+        assertArrayEquals("put(byte)  [overwriting]", new byte[] {3, 4, 5, 6}, instance.snapshot());
+        assertTrue("put(byte[],int,int)  [overwriting]", instance.put(new byte[] {7, 8, 9}, 0, 3));
+        assertArrayEquals("put(byte[],int,int)  [overwriting]", new byte[] {6, 7, 8, 9}, instance.snapshot());
+        assertFalse("put(byte[],int,int)  [longer than capacity]", instance.put(new byte[5], 0, 5));
+        assertArrayEquals("put(byte[],int,int)  [longer than capacity]", new byte[] {6, 7, 8, 9}, instance.snapshot());
+        assertTrue("putShort(short)  [overwriting]", instance.putShort((short)0x0a0b));
+        assertArrayEquals("putShort(short)  [overwriting]", new byte[] {8, 9, 10, 11}, instance.snapshot());
+        assertTrue("putInt(int)  [overwriting]", instance.putInt(0x01020304));
+        assertEquals("getInt()", 0x01020304, instance.getInt());
+        assertEquals("getOverwritten()", 11, instance.getOverwritten());
+    }
+}
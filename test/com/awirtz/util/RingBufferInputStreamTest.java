@@ -0,0 +1,57 @@
+package com.awirtz.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+public class RingBufferInputStreamTest {
+
+    public RingBufferInputStreamTest() {}
+
+    @Test public void testRead() {
+        RingBufferInputStream instance = new RingBufferInputStream(
+                new RingBuffer(new byte[] {1, 2, 3}, 2, 3));
+        assertEquals("available()", 3, instance.available());
+        assertEquals("read()", 3, instance.read());
+        byte[] out = new byte[4];
+        assertEquals("read(byte[],int,int)  [zero length]", 0, instance.read(out, 0, 0));
+        assertEquals("read(byte[],int,int)", 2, instance.read(out, 1, 3));
+        assertEquals("[0, 1, 2, 0]", Arrays.toString(out));
+        assertEquals("read()  [empty]", -1, instance.read());
+        assertEquals("read(byte[],int,int)  [empty]", -1, instance.read(out, 0, 4));
+    }
+
+    @Test public void testSkip() {
+        RingBuffer ringBuffer = new RingBuffer(new byte[] {1, 2, 3}, 1, 3);
+        RingBufferInputStream instance = new RingBufferInputStream(ringBuffer);
+        assertEquals("skip(long)", 2, instance.skip(2));
+        assertEquals("skip(long)  [past end]", 1, instance.skip(5));
+        assertEquals("[1, 2, 3], 1, 0", ringBuffer.toString());
+    }
+
+    @Test public void testTransferTo() throws IOException {
+        RingBuffer ringBuffer = new RingBuffer(new byte[] {1, 2, 3}, 2, 3);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertEquals("transferTo(OutputStream)  [wrapping]",
+                3, new RingBufferInputStream(ringBuffer).transferTo(out));
+        assertEquals("[3, 1, 2]", Arrays.toString(out.toByteArray()));
+        assertEquals("transferTo(OutputStream)  [drained]", 0, ringBuffer.getLength());
+        ringBuffer.write(new byte[] {4, 5}, 0, 2);
+        boolean ioe = false;
+        try {
+            new RingBufferInputStream(ringBuffer).transferTo(new OutputStream() {
+                @Override public void write(int b) throws IOException {
+                    throw new IOException("broken");
+                }
+            });
+        } catch(IOException e) {
+            ioe = "broken".equals(e.getMessage());
+        }
+        assertTrue("transferTo(OutputStream)  [failure]", ioe);
+        assertEquals("transferTo(OutputStream)  [not consumed]", 2, ringBuffer.getLength());
+    }
+}
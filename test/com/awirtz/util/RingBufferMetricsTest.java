@@ -0,0 +1,164 @@
+package com.awirtz.util;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.channels.Pipe;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+public class RingBufferMetricsTest {
+
+    public RingBufferMetricsTest() {}
+
+    @Test public void testRingBuffer() {
+        RingBuffer instance = new RingBuffer(4);
+        assertNull("getMetrics()  [detached]", instance.getMetrics());
+        RingBufferMetrics metrics = new RingBufferMetrics();
+        instance.setMetrics(metrics);
+        assertSame("getMetrics()  [attached]", metrics, instance.getMetrics());
+        byte[] buffer = new byte[10];
+        instance.write(buffer, 0, 3);
+        instance.read(buffer, 0, 2);
+        // wraps and fills the buffer
+        instance.write(buffer, 0, 3);
+        // full
+        instance.write(buffer, 0, 1);
+        // wraps and empties the buffer
+        instance.read(buffer, 0, 10);
+        // empty
+        instance.read(buffer, 0, 1);
+        instance.get();
+        assertEquals("snapshot()",
+                "bytesWritten=6, bytesRead=6, shortWrites=1, emptyReads=2, "
+                + "wrappedTransfers=2, highWaterMark=4", metrics.snapshot().toString());
+        metrics.reset();
+        assertEquals("reset()",
+                "bytesWritten=0, bytesRead=0, shortWrites=0, emptyReads=0, "
+                + "wrappedTransfers=0, highWaterMark=0", metrics.toString());
+        instance.setMetrics(null);
+        instance.write(buffer, 0, 1);
+        assertEquals("setMetrics(null)", 0, metrics.getBytesWritten());
+    }
+
+    @Test public void testPutGet() {
+        RingBuffer instance = new RingBuffer(new byte[3], 2, 0);
+        RingBufferMetrics metrics = new RingBufferMetrics();
+        instance.setMetrics(metrics);
+        instance.put((byte)1);
+        assertTrue("put(byte[],int,int)  [wrapping]", instance.put(new byte[] {2, 3}, 0, 2));
+        assertFalse("put(byte)  [full]", instance.put((byte)4));
+        assertTrue("get(byte[],int,int)  [wrapping]", instance.get(new byte[2], 0, 2));
+        assertFalse("get(byte[],int,int)  [underrun]", instance.get(new byte[2], 0, 2));
+        RingBufferMetrics.Snapshot snapshot = metrics.snapshot();
+        assertEquals("put  [bytesWritten]", 3, snapshot.getBytesWritten());
+        assertEquals("get  [bytesRead]", 2, snapshot.getBytesRead());
+        assertEquals("put  [shortWrites]", 1, snapshot.getShortWrites());
+        assertEquals("get  [emptyReads]", 1, snapshot.getEmptyReads());
+        assertEquals("put/get  [wrappedTransfers]", 1, snapshot.getWrappedTransfers());
+        assertEquals("put  [highWaterMark]", 3, snapshot.getHighWaterMark());
+    }
+
+    @Test public void testReadFrom() throws IOException {
+        RingBuffer instance = new RingBuffer(4);
+        RingBufferMetrics metrics = new RingBufferMetrics();
+        instance.setMetrics(metrics);
+        instance.put((byte)1);
+        Pipe pipe = Pipe.open();
+        pipe.sink().write(ByteBuffer.wrap(new byte[] {2, 3, 4, 5}));
+        pipe.source().configureBlocking(false);
+        assertEquals("readFrom(ScatteringByteChannel)", 3, instance.readFrom(pipe.source()));
+        assertEquals("readFrom(ScatteringByteChannel)  [not short]", 0, metrics.getShortWrites());
+        instance.read(new byte[4], 0, 4);
+        assertEquals("readFrom(ScatteringByteChannel,int)", 1, instance.readFrom(pipe.source(), 2));
+        assertEquals("readFrom(ScatteringByteChannel,int)  [channel ran dry]", 0, metrics.getShortWrites());
+        pipe.sink().write(ByteBuffer.wrap(new byte[] {6, 7, 8, 9}));
+        assertEquals("readFrom(ScatteringByteChannel,int)  [truncated]", 3, instance.readFrom(pipe.source(), 4));
+        assertEquals("readFrom(ScatteringByteChannel,int)  [short]", 1, metrics.getShortWrites());
+        pipe.sink().close();
+        pipe.source().close();
+    }
+
+    @Test public void testSpscRingBuffer() {
+        SpscRingBuffer instance = new SpscRingBuffer(4);
+        RingBufferMetrics metrics = new RingBufferMetrics();
+        instance.setMetrics(metrics);
+        byte[] buffer = new byte[10];
+        instance.write(buffer, 0, 3);
+        instance.read(buffer, 0, 2);
+        instance.write(buffer, 0, 5);
+        instance.read(buffer, 0, 10);
+        instance.read(buffer, 0, 1);
+        assertEquals("SpscRingBuffer",
+                "bytesWritten=6, bytesRead=6, shortWrites=1, emptyReads=1, "
+                + "wrappedTransfers=2, highWaterMark=4", metrics.toString());
+    }
+
+    @Test public void testConcurrentProducers() throws InterruptedException {
+        final MpscRingBuffer instance = new MpscRingBuffer(64);
+        RingBufferMetrics metrics = new RingBufferMetrics();
+        instance.setMetrics(metrics);
+        final int producers = 4;
+        final int perProducer = 1 << 14;
+        Thread[] threads = new Thread[producers];
+        for(int p = 0; p < producers; p++) {
+            threads[p] = new Thread() {
+                @Override public void run() {
+                    byte[] chunk = new byte[13];
+                    int sent = 0;
+                    while(sent < perProducer) {
+                        int n = instance.write(chunk, 0, Math.min(chunk.length, perProducer - sent));
+                        if(n == 0) {
+                            Thread.yield();
+                        }
+                        sent += n;
+                    }
+                }
+            };
+            threads[p].start();
+        }
+        byte[] chunk = new byte[29];
+        int received = 0;
+        while(received < producers * perProducer) {
+            int n = instance.read(chunk, 0, chunk.length);
+            if(n == 0) {
+                Thread.yield();
+            }
+            received += n;
+        }
+        for(Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals("concurrent producers  [bytesWritten]",
+                producers * perProducer, metrics.getBytesWritten());
+        assertEquals("concurrent producers  [bytesRead]",
+                producers * perProducer, metrics.getBytesRead());
+        assertTrue("concurrent producers  [highWaterMark]",
+                metrics.getHighWaterMark() > 0 && metrics.getHighWaterMark() <= 64);
+    }
+
+    @Test public void testRegister() throws JMException {
+        RingBufferMetrics metrics = new RingBufferMetrics();
+        RingBuffer instance = new RingBuffer(8);
+        instance.setMetrics(metrics);
+        instance.write(new byte[5], 0, 5);
+        ObjectName name = metrics.register("test:register");
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            assertEquals("register(String)  [BytesWritten]",
+                    5L, server.getAttribute(name, "BytesWritten"));
+            assertEquals("register(String)  [HighWaterMark]",
+                    5L, server.getAttribute(name, "HighWaterMark"));
+        } finally {
+            metrics.unregister();
+        }
+        assertFalse("unregister()", server.isRegistered(name));
+    }
+}
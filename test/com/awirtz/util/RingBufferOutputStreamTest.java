@@ -0,0 +1,38 @@
+package com.awirtz.util;
+
+import java.io.IOException;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+public class RingBufferOutputStreamTest {
+
+    public RingBufferOutputStreamTest() {}
+
+    @Test public void testWrite() throws IOException {
+        RingBuffer ringBuffer = new RingBuffer(new byte[] {6, 7, 8}, 2, 0);
+        RingBufferOutputStream instance = new RingBufferOutputStream(ringBuffer);
+        instance.write(1);
+        instance.write(new byte[] {2, 3, 4}, 1, 2);
+        assertEquals("write(byte[],int,int)  [wrapping]", "[3, 4, 1], 2, 3", ringBuffer.toString());
+        boolean ioe = false; try { instance.write(5); }
+        catch (IOException e) { ioe = true; }
+        assertTrue("write(int)  [full]", ioe);
+        ringBuffer.read(new byte[1], 0, 1);
+        ioe = false; try { instance.write(new byte[] {5, 6}, 0, 2); }
+        catch (IOException e) { ioe = true; }
+        assertTrue("write(byte[],int,int)  [insufficient space]", ioe);
+        assertEquals("write(byte[],int,int)  [all-or-nothing]", "[3, 4, 1], 0, 2", ringBuffer.toString());
+    }
+
+    @Test public void testWriteElastic() throws IOException {
+        ElasticRingBuffer ringBuffer = new ElasticRingBuffer(16, 128);
+        RingBufferOutputStream instance = new RingBufferOutputStream(ringBuffer);
+        instance.write(new byte[64]);
+        assertEquals("write(byte[])  [growing]", 64, ringBuffer.getLength());
+        boolean full = false; try { instance.write(new byte[65]); }
+        catch (IOException e) { full = true; }
+        assertTrue("write(byte[])  [beyond maximum]", full);
+        assertEquals("write(byte[])  [beyond maximum writes nothing]", 64, ringBuffer.getLength());
+    }
+}
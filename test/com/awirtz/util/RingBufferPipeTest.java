@@ -0,0 +1,93 @@
+package com.awirtz.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+public class RingBufferPipeTest {
+
+    public RingBufferPipeTest() {}
+
+    private static byte[] pattern(int length) {
+        byte[] data = new byte[length];
+        for(int i = 0; i < length; i++) {
+            data[i] = (byte)(i * 31);
+        }
+        return data;
+    }
+
+    private static Thread writeInBackground(final OutputStream out, final byte[] data) {
+        Thread writer = new Thread() {
+            @Override public void run() {
+                try {
+                    for(int i = 0; i < data.length; i += 7) {
+                        out.write(data, i, Math.min(7, data.length - i));
+                    }
+                    out.write(-1);
+                    out.close();
+                } catch(IOException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        };
+        writer.start();
+        return writer;
+    }
+
+    @Test public void testStreams() throws IOException, InterruptedException {
+        RingBufferPipe instance = new RingBufferPipe(16);
+        byte[] data = pattern(10000);
+        Thread writer = writeInBackground(instance.getOutputStream(), data);
+        InputStream in = instance.getInputStream();
+        byte[] received = new byte[data.length];
+        int total = 0;
+        while(total < received.length) {
+            int n = in.read(received, total, Math.min(5, received.length - total));
+            assertTrue("read(byte[],int,int)  [blocking]", n > 0);
+            total += n;
+        }
+        assertArrayEquals("read(byte[],int,int)  [in order]", data, received);
+        assertEquals("read()", 0xff, in.read());
+        assertEquals("read()  [end-of-stream]", -1, in.read());
+        assertEquals("read(byte[],int,int)  [end-of-stream]", -1, in.read(received, 0, 1));
+        writer.join();
+    }
+
+    @Test public void testTransferTo() throws IOException, InterruptedException {
+        RingBufferPipe instance = new RingBufferPipe(16, new BlockingWaitStrategy());
+        byte[] data = pattern(5000);
+        Thread writer = writeInBackground(instance.getOutputStream(), data);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertEquals("transferTo(OutputStream)", data.length + 1, instance.transferTo(out));
+        byte[] expected = Arrays.copyOf(data, data.length + 1);
+        expected[data.length] = -1;
+        assertArrayEquals("transferTo(OutputStream)  [in order]", expected, out.toByteArray());
+        writer.join();
+    }
+
+    @Test public void testClose() throws IOException {
+        RingBufferPipe instance = new RingBufferPipe(4);
+        OutputStream out = instance.getOutputStream();
+        out.write(new byte[] {1, 2}, 0, 2);
+        out.close();
+        boolean ioe = false; try { out.write(3); }
+        catch (IOException e) { ioe = true; }
+        assertTrue("write(int)  [closed]", ioe);
+        InputStream in = instance.getInputStream();
+        assertEquals("read()  [after close]", 1, in.read());
+        assertEquals("read()  [after close]", 2, in.read());
+        assertEquals("read()  [end-of-stream]", -1, in.read());
+
+        instance = new RingBufferPipe(4);
+        instance.getInputStream().close();
+        ioe = false; try { instance.getOutputStream().write(new byte[8], 0, 8); }
+        catch (IOException e) { ioe = true; }
+        assertTrue("write(byte[],int,int)  [reader closed]", ioe);
+    }
+}
@@ -0,0 +1,147 @@
+package com.awirtz.util;
+
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+public class RingBufferPoolTest {
+
+    public RingBufferPoolTest() {}
+
+    @Test public void testRingBufferPool() {
+        RingBufferPool instance = new RingBufferPool(64, 32, 8);
+        assertEquals("getSizeClasses()", "[8, 32]", Arrays.toString(instance.getSizeClasses()));
+        assertEquals("getSlabCount()  [lazy]", 0, instance.getSlabCount());
+        boolean iae = false; try { new RingBufferPool(16, 32); }
+        catch (IllegalArgumentException e) { iae = true; }
+        assertTrue("new RingBufferPool(int,int...)  [size class exceeds slab]", iae);
+    }
+
+    @Test public void testAcquire() {
+        RingBufferPool instance = new RingBufferPool(16, 4, 8);
+        PooledRingBuffer a = instance.acquire(3);
+        PooledRingBuffer b = instance.acquire(4);
+        PooledRingBuffer c = instance.acquire(5);
+        assertEquals("acquire(int)  [rounded up]", 4, a.getMaxLength());
+        assertEquals("acquire(int)  [exact]", 4, b.getMaxLength());
+        assertEquals("acquire(int)  [next size class]", 8, c.getMaxLength());
+        assertSame("acquire(int)  [same slab]", a.getByteArray(), b.getByteArray());
+        assertTrue("acquire(int)  [distinct regions]", a.getOffset() != b.getOffset());
+        assertNotSame("acquire(int)  [per-class slab]", a.getByteArray(), c.getByteArray());
+        assertEquals("getSlabCount()", 2, instance.getSlabCount());
+        assertEquals("getLeasedCount()", 3, instance.getLeasedCount());
+        boolean iae = false; try { instance.acquire(9); }
+        catch (IllegalArgumentException e) { iae = true; }
+        assertTrue("acquire(int)  [too large]", iae);
+    }
+
+    @Test public void testRelease() {
+        RingBufferPool instance = new RingBufferPool(8, 4);
+        PooledRingBuffer a = instance.acquire(4);
+        PooledRingBuffer b = instance.acquire(4);
+        a.write(new byte[] {1, 2, 3}, 0, 3);
+        a.read(new byte[2], 0, 2);
+        a.setMetrics(new RingBufferMetrics());
+        a.setByteOrder(ByteOrder.LITTLE_ENDIAN);
+        assertEquals("write(byte[],int,int)  [isolated]", 0, b.getLength());
+        a.release();
+        assertEquals("release()  [cleared]", 0, a.getLength());
+        assertEquals("release()  [tail reset]", a.getOffset(), a.getTail());
+        assertNull("release()  [metrics detached]", a.getMetrics());
+        assertEquals("release()  [byte order reset]", ByteOrder.BIG_ENDIAN, a.getByteOrder());
+        assertEquals("getLeasedCount()  [released]", 1, instance.getLeasedCount());
+        assertSame("acquire(int)  [reused]", a, instance.acquire(4));
+        assertEquals("getSlabCount()  [reused]", 1, instance.getSlabCount());
+        b.release();
+        boolean ise = false; try { b.release(); }
+        catch (IllegalStateException e) { ise = true; }
+        assertTrue("release()  [twice]", ise);
+    }
+
+    @Test public void testLeak() throws InterruptedException {
+        RingBufferPool instance = new RingBufferPool(4, 4);
+        instance.acquire(4);
+        for(int i = 0; i < 100 && instance.getLeakCount() == 0; i++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+        assertEquals("getLeakCount()", 1, instance.getLeakCount());
+        assertEquals("getLeasedCount()  [leaked]", 0, instance.getLeasedCount());
+        instance.acquire(4).release();
+        assertEquals("getSlabCount()  [reclaimed]", 1, instance.getSlabCount());
+    }
+
+    @Test public void testConcurrentAcquire() throws InterruptedException {
+        final RingBufferPool instance = new RingBufferPool(1024, 16, 64);
+        final int threads = 4;
+        final boolean[] failed = new boolean[threads];
+        Thread[] workers = new Thread[threads];
+        for(int t = 0; t < threads; t++) {
+            final int id = t;
+            workers[t] = new Thread() {
+                @Override public void run() {
+                    byte[] in = new byte[16];
+                    byte[] out = new byte[16];
+                    Arrays.fill(in, (byte)id);
+                    for(int i = 0; i < 10000; i++) {
+                        PooledRingBuffer buffer = instance.acquire(16);
+                        buffer.write(in, 0, 16);
+                        Thread.yield();
+                        buffer.read(out, 0, 16);
+                        if(!Arrays.equals(in, out)) {
+                            failed[id] = true;
+                        }
+                        buffer.release();
+                    }
+                }
+            };
+            workers[t].start();
+        }
+        for(Thread worker : workers) {
+            worker.join();
+        }
+        for(int t = 0; t < threads; t++) {
+            assertTrue("concurrent acquire/release  [isolated]", !failed[t]);
+        }
+        assertEquals("concurrent acquire/release  [one slab]", 1, instance.getSlabCount());
+        assertEquals("concurrent acquire/release  [all released]", 0, instance.getLeasedCount());
+    }
+
+    @Test public void testConcurrentRelease() throws InterruptedException {
+        final RingBufferPool instance = new RingBufferPool(64, 16);
+        final AtomicInteger refused = new AtomicInteger();
+        for(int i = 0; i < 200; i++) {
+            final PooledRingBuffer buffer = instance.acquire(16);
+            Thread[] releasers = new Thread[2];
+            for(int t = 0; t < releasers.length; t++) {
+                releasers[t] = new Thread() {
+                    @Override public void run() {
+                        try {
+                            buffer.release();
+                        } catch(IllegalStateException e) {
+                            refused.incrementAndGet();
+                        }
+                    }
+                };
+                releasers[t].start();
+            }
+            for(Thread releaser : releasers) {
+                releaser.join();
+            }
+        }
+        assertEquals("release()  [concurrent, one refused each time]", 200, refused.get());
+        PooledRingBuffer a = instance.acquire(16);
+        PooledRingBuffer b = instance.acquire(16);
+        PooledRingBuffer c = instance.acquire(16);
+        PooledRingBuffer d = instance.acquire(16);
+        assertTrue("acquire(int)  [no region handed out twice]",
+                a != b && a != c && a != d && b != c && b != d && c != d);
+        assertEquals("getSlabCount()  [concurrent release]", 1, instance.getSlabCount());
+    }
+}
@@ -1,7 +1,13 @@
 package com.awirtz.util;
 
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Pipe;
 import java.util.Arrays;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import org.junit.Test;
 
@@ -17,6 +23,32 @@ public class RingBufferTest {
                 "[1, 2, 3], 0, 0", new RingBuffer(buffer).toString());
         assertEquals("new RingBuffer(byte[],int,int)",
                 "[1, 2, 3], 1, 2", new RingBuffer(buffer, 1, 2).toString());
+        assertEquals("new RingBuffer(byte[],int,int,int,int)",
+                "[2, 3], 2, 1", new RingBuffer(buffer, 1, 2, 2, 1).toString());
+        boolean oob = false; try { new RingBuffer(buffer, 2, 2, 2, 0); }
+        catch (IndexOutOfBoundsException e) { oob = true; }
+        assertTrue("new RingBuffer(byte[],int,int,int,int)  [out-of-bounds]", oob);
+    }
+
+    @Test public void testRegion() {
+        byte[] array = {9, 9, 6, 7, 8, 9};
+        RingBuffer instance = new RingBuffer(array, 2, 3, 4, 0);
+        assertEquals("getOffset()", 2, instance.getOffset());
+        assertEquals("getMaxLength()", 3, instance.getMaxLength());
+        assertEquals("write(byte[],int,int)  [region wrapping]",
+                3, instance.write(new byte[] {1, 2, 3, 4}, 0, 4));
+        assertEquals("[9, 9, 2, 3, 1, 9]", Arrays.toString(array));
+        assertEquals("[2, 3, 1], 4, 3", instance.toString());
+        byte[] out = new byte[2];
+        assertEquals("read(byte[],int,int)  [region wrapping]",
+                2, instance.read(out, 0, 2));
+        assertEquals("[1, 2]", Arrays.toString(out));
+        assertEquals("getTail()  [region]", 3, instance.getTail());
+        assertEquals("get()  [region]", 3, instance.get());
+        assertEquals("get()  [region empty]", -1, instance.get());
+        instance.put((byte)5);
+        instance.clear();
+        assertEquals("clear()", "[2, 3, 5], 2, 0", instance.toString());
     }
     
     @Test public void testGetTail() {
@@ -211,4 +243,219 @@ public class RingBufferTest {
         assertEquals("reader(byte[],int,int)  [underrun empty]",
                 "0:[1, 2, 3, 4, 5], 1, 0", testReaderHelper(1, 0, 1, 3));
     }
+
+    private String testPutHelper(int tail, int length, int offset, int n) {
+        byte[] buffer = {1,2,3,4,5};
+        byte[] prefill = {6,7,8};
+        RingBuffer instance = new RingBuffer(prefill, tail, length);
+        boolean result = instance.put(buffer, offset, n);
+        return result + ":" + instance;
+    }
+    @Test public void testPut() {
+        RingBuffer instance = new RingBuffer(new byte[] {6,7,8}, 2, 1);
+        assertTrue("put(byte)  [wrapping]", instance.put((byte)1));
+        assertTrue("put(byte)  [non-wrapping]", instance.put((byte)2));
+        assertTrue("put(byte)  [full]", !instance.put((byte)3));
+        assertEquals("[1, 2, 8], 2, 3", instance.toString());
+        assertEquals("put(byte[],int,int)  [non-wrapping]",
+                "true:[2, 3, 8], 0, 2", testPutHelper(0, 0, 1, 2));
+        assertEquals("put(byte[],int,int)  [offset wrapping]",
+                "true:[3, 4, 2], 2, 3", testPutHelper(2, 0, 1, 3));
+        assertEquals("put(byte[],int,int)  [overrun]",
+                "false:[6, 7, 8], 1, 1", testPutHelper(1, 1, 1, 3));
+    }
+
+    private String testGetHelper(int tail, int length, int offset, int n) {
+        byte[] buffer = {1,2,3,4,5};
+        byte[] prefill = {6,7,8};
+        RingBuffer instance = new RingBuffer(prefill, tail, length);
+        boolean result = instance.get(buffer, offset, n);
+        return result + ":" + Arrays.toString(buffer) + ", " + instance.getTail() + ", " + instance.getLength();
+    }
+    @Test public void testGet() {
+        RingBuffer instance = new RingBuffer(new byte[] {6,7,-8}, 2, 2);
+        assertEquals("get()  [unsigned]", 248, instance.get());
+        assertEquals("get()  [wrapped]", 6, instance.get());
+        assertEquals("get()  [empty]", -1, instance.get());
+        assertEquals("get(byte[],int,int)  [offset wrapping]",
+                "true:[1, 8, 6, 4, 5], 1, 1", testGetHelper(2, 3, 1, 2));
+        assertEquals("get(byte[],int,int)  [underrun]",
+                "false:[1, 2, 3, 4, 5], 2, 2", testGetHelper(2, 2, 1, 3));
+    }
+
+    @Test public void testDrainTo() {
+        RingBuffer instance = new RingBuffer(new byte[] {6,7,8}, 2, 3);
+        final StringBuilder log = new StringBuilder();
+        assertEquals("drainTo(RingBufferReader,int)  [wrapping]", 3,
+                instance.drainTo(new RingBufferBatchReader() {
+            @Override public void read(byte[] buf, int off, int len) {
+                log.append(Arrays.toString(Arrays.copyOfRange(buf, off, off + len)));
+            }
+            @Override public void endOfBatch(int length) {
+                log.append(" end ").append(length);
+            }
+        }, 5));
+        assertEquals("[8][6, 7] end 3", log.toString());
+        assertEquals("drainTo(RingBufferReader,int)  [empty]", 0,
+                instance.drainTo(new RingBufferBatchReader() {
+            @Override public void read(byte[] buf, int off, int len) {
+            }
+            @Override public void endOfBatch(int length) {
+                log.append(" unexpected");
+            }
+        }, 5));
+        assertEquals("[8][6, 7] end 3", log.toString());
+    }
+
+    private String testReadFromHelper(int tail, int length, int n) throws IOException {
+        Pipe pipe = Pipe.open();
+        pipe.sink().write(ByteBuffer.wrap(new byte[] {1,2,3,4,5}));
+        RingBuffer instance = new RingBuffer(new byte[] {6,7,8}, tail, length);
+        int result = instance.readFrom(pipe.source(), n);
+        return result + ":" + instance;
+    }
+    @Test public void testReadFrom() throws IOException {
+        assertEquals("readFrom(ScatteringByteChannel,int)  [non-wrapping]",
+                "2:[1, 2, 8], 0, 2", testReadFromHelper(0, 0, 2));
+        assertEquals("readFrom(ScatteringByteChannel,int)  [overrun non-wrapping]",
+                "2:[1, 2, 8], 2, 3", testReadFromHelper(2, 1, 5));
+        assertEquals("readFrom(ScatteringByteChannel,int)  [overrun wrapping]",
+                "2:[2, 7, 1], 1, 3", testReadFromHelper(1, 1, 5));
+        assertEquals("readFrom(ScatteringByteChannel,int)  [full]",
+                "0:[6, 7, 8], 1, 3", testReadFromHelper(1, 3, 5));
+        Pipe pipe = Pipe.open();
+        pipe.sink().close();
+        assertEquals("readFrom(ScatteringByteChannel)  [end-of-stream]",
+                -1, new RingBuffer(new byte[] {6,7,8}, 0, 0).readFrom(pipe.source()));
+    }
+
+    private String testWriteToHelper(int tail, int length, int n) throws IOException {
+        Pipe pipe = Pipe.open();
+        RingBuffer instance = new RingBuffer(new byte[] {6,7,8}, tail, length);
+        int result = instance.writeTo(pipe.sink(), n);
+        ByteBuffer received = ByteBuffer.allocate(result);
+        while(received.hasRemaining()) {
+            pipe.source().read(received);
+        }
+        return result + ":" + Arrays.toString(received.array())
+                + ", " + instance.getTail() + ", " + instance.getLength();
+    }
+    @Test public void testWriteTo() throws IOException {
+        assertEquals("writeTo(GatheringByteChannel,int)  [non-wrapping]",
+                "2:[6, 7], 2, 1", testWriteToHelper(0, 3, 2));
+        assertEquals("writeTo(GatheringByteChannel,int)  [underrun wrapping]",
+                "3:[8, 6, 7], 2, 0", testWriteToHelper(2, 3, 5));
+        assertEquals("writeTo(GatheringByteChannel,int)  [empty]",
+                "0:[], 1, 0", testWriteToHelper(1, 0, 5));
+    }
+
+    @Test public void testPeek() {
+        RingBuffer instance = new RingBuffer(new byte[] {6, 7, 8}, 2, 3);
+        byte[] out = new byte[5];
+        assertEquals("peek(byte[],int,int)  [underrun wrapping]", 3, instance.peek(out, 1, 4));
+        assertEquals("[0, 8, 6, 7, 0]", Arrays.toString(out));
+        assertEquals("peek(byte[],int,int)  [not consumed]", "[6, 7, 8], 2, 3", instance.toString());
+        final StringBuilder segments = new StringBuilder();
+        assertEquals("peek(RingBufferReader,int)  [wrapping]", 2, instance.peek(new RingBufferReader() {
+            @Override public void read(byte[] buf, int off, int len) {
+                segments.append(off).append('+').append(len).append(' ');
+            }
+        }, 2));
+        assertEquals("2+1 0+1 ", segments.toString());
+        assertEquals("peek(RingBufferReader,int)  [not consumed]", 3, instance.getLength());
+    }
+
+    @Test public void testGetIndex() {
+        RingBuffer instance = new RingBuffer(new byte[] {6, 7, 8}, 2, 2);
+        assertEquals("get(int)", 8, instance.get(0));
+        assertEquals("get(int)  [wrapped]", 6, instance.get(1));
+        boolean oob = false; try { instance.get(2); }
+        catch (IndexOutOfBoundsException e) { oob = true; }
+        assertTrue("get(int)  [past end]", oob);
+        oob = false; try { instance.get(-1); }
+        catch (IndexOutOfBoundsException e) { oob = true; }
+        assertTrue("get(int)  [negative]", oob);
+    }
+
+    @Test public void testSkip() {
+        RingBuffer instance = new RingBuffer(new byte[] {6, 7, 8}, 2, 3);
+        assertEquals("skip(int)  [wrapping]", 2, instance.skip(2));
+        assertEquals("[6, 7, 8], 1, 1", instance.toString());
+        assertEquals("skip(int)  [underrun]", 1, instance.skip(5));
+        assertEquals("skip(int)  [empty]", 0, instance.skip(1));
+        assertEquals("[6, 7, 8], 2, 0", instance.toString());
+    }
+
+    @Test public void testSnapshot() {
+        RingBuffer instance = new RingBuffer(new byte[] {3, 4, 5, 9, 1, 2}, 4, 5);
+        assertEquals("snapshot()  [wrapping]", "[1, 2, 3, 4, 5]", Arrays.toString(instance.snapshot()));
+        assertEquals("snapshot()  [not consumed]", 5, instance.getLength());
+        instance.clear();
+        assertEquals("snapshot()  [empty]", 0, instance.snapshot().length);
+    }
+
+    @Test public void testIndexOf() {
+        RingBuffer instance = new RingBuffer(new byte[] {3, 4, 5, 9, 1, 2}, 4, 5);
+        assertEquals("indexOf(byte)  [before wrap]", 1, instance.indexOf((byte)2));
+        assertEquals("indexOf(byte)  [after wrap]", 3, instance.indexOf((byte)4));
+        assertEquals("indexOf(byte)  [outside data]", -1, instance.indexOf((byte)9));
+        assertEquals("indexOf(byte,int)", 4, instance.indexOf((byte)5, 3));
+        assertEquals("indexOf(byte,int)  [past end]", -1, instance.indexOf((byte)5, 5));
+        assertEquals("indexOf(byte[])  [straddling]", 1, instance.indexOf(new byte[] {2, 3, 4}));
+        assertEquals("indexOf(byte[])  [wrapped]", 3, instance.indexOf(new byte[] {4, 5}));
+        assertEquals("indexOf(byte[])  [overhanging]", -1, instance.indexOf(new byte[] {5, 9}));
+        assertEquals("indexOf(byte[])  [absent]", -1, instance.indexOf(new byte[] {2, 4}));
+        assertEquals("indexOf(byte[])  [empty]", 0, instance.indexOf(new byte[0]));
+        instance = new RingBuffer(new byte[] {1, 2, 3, 4}, 1, 2);
+        assertEquals("indexOf(byte)  [non-wrapping]", 1, instance.indexOf((byte)3));
+        assertEquals("indexOf(byte)  [non-wrapping outside data]", -1, instance.indexOf((byte)4));
+    }
+
+    @Test public void testPutTyped() {
+        RingBuffer instance = new RingBuffer(new byte[6], 0, 0);
+        assertEquals("getByteOrder()  [default]", ByteOrder.BIG_ENDIAN, instance.getByteOrder());
+        assertTrue("putInt(int)  [non-wrapping]", instance.putInt(0x01020304));
+        assertEquals("[1, 2, 3, 4, 0, 0], 0, 4", instance.toString());
+        instance.skip(4);
+        assertTrue("putInt(int)  [wrapping]", instance.putInt(0x05060708));
+        assertTrue("putShort(short)  [non-wrapping]", instance.putShort((short)0x090a));
+        assertEquals("[7, 8, 9, 10, 5, 6], 4, 6", instance.toString());
+        assertFalse("putShort(short)  [full]", instance.putShort((short)1));
+        instance.clear();
+        instance.setByteOrder(ByteOrder.LITTLE_ENDIAN);
+        assertTrue("putInt(int)  [little-endian]", instance.putInt(0x01020304));
+        assertEquals("[4, 3, 2, 1, 5, 6], 0, 4", instance.toString());
+        assertFalse("putLong(long)  [insufficient space]", instance.putLong(1L));
+    }
+
+    @Test public void testGetTyped() {
+        RingBuffer instance = new RingBuffer(new byte[] {9, 10, 3, 4, 5, 6}, 4, 6);
+        assertEquals("getInt()  [wrapping]", 0x0506090a, instance.getInt());
+        assertEquals("getShort()  [non-wrapping]", 0x0304, instance.getShort());
+        boolean underflow = false; try { instance.getShort(); }
+        catch (BufferUnderflowException e) { underflow = true; }
+        assertTrue("getShort()  [empty]", underflow);
+        instance = new RingBuffer(new byte[] {9, 10, 3, 4, 5, 6, 7, 8}, 4, 8);
+        instance.setByteOrder(ByteOrder.LITTLE_ENDIAN);
+        assertEquals("getLong()  [little-endian wrapping]", 0x04030a0908070605L, instance.getLong());
+    }
+
+    @Test public void testTypedRoundTrip() {
+        RingBuffer instance = new RingBuffer(13);
+        for(ByteOrder order : new ByteOrder[] {ByteOrder.BIG_ENDIAN, ByteOrder.LITTLE_ENDIAN}) {
+            instance.setByteOrder(order);
+            for(int i = 0; i < 20; i++) {
+                instance.putLong(-1234567890123456789L + i);
+                assertEquals("putLong(long)/getLong()", -1234567890123456789L + i, instance.getLong());
+                instance.putDouble(Math.PI * i);
+                assertEquals("putDouble(double)/getDouble()", Math.PI * i, instance.getDouble(), 0.0);
+                instance.putFloat(-1.5f * i);
+                assertEquals("putFloat(float)/getFloat()", -1.5f * i, instance.getFloat(), 0.0f);
+                instance.putShort((short)-i);
+                assertEquals("putShort(short)/getShort()", (short)-i, instance.getShort());
+                instance.put((byte)i);
+                instance.get();
+            }
+        }
+    }
 }
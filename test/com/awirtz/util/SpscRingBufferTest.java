@@ -0,0 +1,195 @@
+package com.awirtz.util;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+public class SpscRingBufferTest {
+
+    public SpscRingBufferTest() {}
+
+    @Test public void testSpscRingBuffer() {
+        assertEquals("new SpscRingBuffer(int)",
+                "[0, 0, 0], 0, 0", new SpscRingBuffer(3).toString());
+        assertEquals("new SpscRingBuffer(byte[])",
+                "[1, 2, 3], 0, 0", new SpscRingBuffer(new byte[] {1, 2, 3}).toString());
+    }
+
+    @Test public void testWriteRead() {
+        SpscRingBuffer instance = new SpscRingBuffer(3);
+        byte[] buffer = {1, 2, 3, 4, 5};
+        assertEquals("write(byte[],int,int)  [non-wrapping]",
+                2, instance.write(buffer, 0, 2));
+        assertEquals("getFreeSpace()", 1, instance.getFreeSpace());
+        byte[] out = new byte[5];
+        assertEquals("read(byte[],int,int)  [non-wrapping]",
+                1, instance.read(out, 0, 1));
+        assertEquals("write(byte[],int,int)  [overrun wrapping]",
+                2, instance.write(buffer, 2, 3));
+        assertEquals("write(byte[],int,int)  [full]",
+                0, instance.write(buffer, 4, 1));
+        assertEquals("[4, 2, 3], 1, 3", instance.toString());
+        assertEquals("read(byte[],int,int)  [underrun wrapping]",
+                3, instance.read(out, 1, 5));
+        assertEquals("[1, 2, 3, 4, 0]", Arrays.toString(out));
+        assertEquals("read(byte[],int,int)  [empty]",
+                0, instance.read(out, 0, 1));
+    }
+
+    @Test public void testWriterReader() {
+        SpscRingBuffer instance = new SpscRingBuffer(new byte[] {6, 7, 8});
+        final byte[] buffer = {1, 2, 3, 4, 5};
+        instance.write(buffer, 0, 2);
+        instance.read(new byte[2], 0, 2);
+        assertEquals("writer(RingBufferWriter,int)  [wrapping]",
+                3, instance.writer(new RingBufferWriter() {
+            int ptr = 0;
+            @Override public void write(byte[] buf, int off, int len) {
+                System.arraycopy(buffer, ptr, buf, off, len);
+                ptr += len;
+            }
+        }, 5));
+        assertEquals("[2, 3, 1], 2, 3", instance.toString());
+        final byte[] out = new byte[5];
+        assertEquals("reader(RingBufferReader,int)  [wrapping]",
+                3, instance.reader(new RingBufferReader() {
+            int ptr = 0;
+            @Override public void read(byte[] buf, int off, int len) {
+                System.arraycopy(buf, off, out, ptr, len);
+                ptr += len;
+            }
+        }, 5));
+        assertEquals("[1, 2, 3, 0, 0]", Arrays.toString(out));
+    }
+
+    @Test public void testDrainTo() {
+        final SpscRingBuffer instance = new SpscRingBuffer(4);
+        instance.write(new byte[] {1, 2, 3}, 0, 3);
+        instance.read(new byte[2], 0, 2);
+        instance.write(new byte[] {4, 5, 6}, 0, 3);
+        final StringBuilder log = new StringBuilder();
+        assertEquals("drainTo(RingBufferReader,int)  [limited]", 3,
+                instance.drainTo(new RingBufferBatchReader() {
+            @Override public void read(byte[] buf, int off, int len) {
+                log.append(Arrays.toString(Arrays.copyOfRange(buf, off, off + len)));
+            }
+            @Override public void endOfBatch(int length) {
+                log.append(" end ").append(length).append(" free ").append(instance.getFreeSpace());
+            }
+        }, 3));
+        assertEquals("[3, 4][5] end 3 free 3", log.toString());
+        assertEquals("drainTo(RingBufferReader,int)  [remainder]", 1,
+                instance.drainTo(new RingBufferReader() {
+            @Override public void read(byte[] buf, int off, int len) {
+            }
+        }, 5));
+        assertEquals("getLength()  [drained]", 0, instance.getLength());
+    }
+
+    @Test public void testPowerOfTwo() {
+        SpscRingBuffer instance = new SpscRingBuffer(4);
+        byte[] buffer = {1, 2, 3, 4, 5, 6};
+        byte[] out = new byte[6];
+        assertEquals("write(byte[],int,int)  [masked]", 3, instance.write(buffer, 0, 3));
+        assertEquals("read(byte[],int,int)  [masked]", 3, instance.read(out, 0, 3));
+        assertEquals("write(byte[],int,int)  [masked wrapping]", 4, instance.write(buffer, 1, 5));
+        assertEquals("[3, 4, 5, 2], 3, 4", instance.toString());
+        assertEquals("read(byte[],int,int)  [masked wrapping]", 4, instance.read(out, 0, 6));
+        assertEquals("[2, 3, 4, 5, 0, 0]", Arrays.toString(out));
+    }
+
+    @Test public void testPutGet() {
+        SpscRingBuffer instance = new SpscRingBuffer(2);
+        assertTrue("put(byte)", instance.put((byte)-1));
+        assertTrue("put(byte)", instance.put((byte)2));
+        assertTrue("put(byte)  [full]", !instance.put((byte)3));
+        assertEquals("get()  [unsigned]", 255, instance.get());
+        assertTrue("put(byte)  [wrapping]", instance.put((byte)3));
+        assertEquals("get()", 2, instance.get());
+        assertEquals("get()  [wrapped]", 3, instance.get());
+        assertEquals("get()  [empty]", -1, instance.get());
+    }
+
+    @Test public void testWriteFullyTimeout() throws InterruptedException {
+        SpscRingBuffer instance = new SpscRingBuffer(3, new BlockingWaitStrategy());
+        assertEquals("writeFully(byte[],int,int,long,TimeUnit)  [timeout]",
+                3, instance.writeFully(new byte[] {1, 2, 3, 4, 5}, 0, 5, 5, TimeUnit.MILLISECONDS));
+        byte[] out = new byte[5];
+        assertEquals("readFully(byte[],int,int,long,TimeUnit)  [timeout]",
+                3, instance.readFully(out, 0, 5, 5, TimeUnit.MILLISECONDS));
+        assertEquals("[1, 2, 3, 0, 0]", Arrays.toString(out));
+    }
+
+    @Test public void testReadFullyWriteFully() throws InterruptedException {
+        WaitStrategy[] strategies = {
+            new YieldingWaitStrategy(), new ParkingWaitStrategy(), new BlockingWaitStrategy()
+        };
+        for(WaitStrategy strategy : strategies) {
+            final SpscRingBuffer instance = new SpscRingBuffer(7, strategy);
+            final byte[] message = new byte[1000];
+            for(int i = 0; i < message.length; i++) {
+                message[i] = (byte)i;
+            }
+            Thread producer = new Thread() {
+                @Override public void run() {
+                    try {
+                        instance.writeFully(message, 0, message.length);
+                    } catch(InterruptedException e) {
+                        // the consumer will notice the short read
+                    }
+                }
+            };
+            producer.start();
+            byte[] out = new byte[message.length];
+            instance.readFully(out, 0, out.length);
+            producer.join();
+            assertTrue("readFully/writeFully " + strategy.getClass().getSimpleName(),
+                    Arrays.equals(message, out));
+        }
+    }
+
+    @Test public void testConcurrentTransfer() throws InterruptedException {
+        final SpscRingBuffer instance = new SpscRingBuffer(61);
+        final int total = 1 << 20;
+        Thread producer = new Thread() {
+            @Override public void run() {
+                byte[] chunk = new byte[17];
+                int sent = 0;
+                while(sent < total) {
+                    int n = Math.min(chunk.length, total - sent);
+                    for(int i = 0; i < n; i++) {
+                        chunk[i] = (byte)(sent + i);
+                    }
+                    int written = 0;
+                    while(written < n) {
+                        int w = instance.write(chunk, written, n - written);
+                        if(w == 0) {
+                            Thread.yield();
+                        }
+                        written += w;
+                    }
+                    sent += n;
+                }
+            }
+        };
+        producer.start();
+        byte[] chunk = new byte[23];
+        int received = 0;
+        boolean ordered = true;
+        while(received < total) {
+            int n = instance.read(chunk, 0, chunk.length);
+            if(n == 0) {
+                Thread.yield();
+            }
+            for(int i = 0; i < n; i++) {
+                ordered &= chunk[i] == (byte)(received + i);
+            }
+            received += n;
+        }
+        producer.join();
+        assertTrue("concurrent transfer preserves order", ordered);
+        assertEquals("concurrent transfer drains", 0, instance.getLength());
+    }
+}
@@ -0,0 +1,92 @@
+package com.awirtz.util;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+public class WaitStrategyTest {
+
+    public WaitStrategyTest() {}
+
+    private static WaitStrategy[] strategies() {
+        return new WaitStrategy[] {
+            new BusySpinWaitStrategy(),
+            new YieldingWaitStrategy(),
+            new ParkingWaitStrategy(),
+            new BlockingWaitStrategy()
+        };
+    }
+
+    @Test public void testSatisfied() throws InterruptedException {
+        WaitCondition satisfied = new WaitCondition() {
+            @Override public boolean isSatisfied() {
+                return true;
+            }
+        };
+        for(WaitStrategy strategy : strategies()) {
+            assertTrue("await(WaitCondition,long)  [satisfied] "
+                    + strategy.getClass().getSimpleName(), strategy.await(satisfied, 0));
+        }
+    }
+
+    @Test public void testTimeout() throws InterruptedException {
+        WaitCondition unsatisfied = new WaitCondition() {
+            @Override public boolean isSatisfied() {
+                return false;
+            }
+        };
+        for(WaitStrategy strategy : strategies()) {
+            assertFalse("await(WaitCondition,long)  [timeout] "
+                    + strategy.getClass().getSimpleName(),
+                    strategy.await(unsatisfied, TimeUnit.MILLISECONDS.toNanos(5)));
+        }
+    }
+
+    @Test public void testSignal() throws InterruptedException {
+        for(final WaitStrategy strategy : strategies()) {
+            final AtomicBoolean flag = new AtomicBoolean();
+            Thread signaller = new Thread() {
+                @Override public void run() {
+                    try {
+                        Thread.sleep(10);
+                    } catch(InterruptedException e) {
+                        return;
+                    }
+                    flag.set(true);
+                    strategy.signal();
+                }
+            };
+            signaller.start();
+            assertTrue("await(WaitCondition,long)  [signalled] "
+                    + strategy.getClass().getSimpleName(),
+                    strategy.await(new WaitCondition() {
+                @Override public boolean isSatisfied() {
+                    return flag.get();
+                }
+            }, TimeUnit.SECONDS.toNanos(10)));
+            signaller.join();
+        }
+    }
+
+    @Test public void testInterrupt() {
+        WaitCondition unsatisfied = new WaitCondition() {
+            @Override public boolean isSatisfied() {
+                return false;
+            }
+        };
+        for(WaitStrategy strategy : strategies()) {
+            boolean interrupted = false;
+            Thread.currentThread().interrupt();
+            try {
+                strategy.await(unsatisfied, TimeUnit.SECONDS.toNanos(10));
+            } catch(InterruptedException e) {
+                interrupted = true;
+            }
+            Thread.interrupted();
+            assertTrue("await(WaitCondition,long)  [interrupted] "
+                    + strategy.getClass().getSimpleName(), interrupted);
+        }
+    }
+}